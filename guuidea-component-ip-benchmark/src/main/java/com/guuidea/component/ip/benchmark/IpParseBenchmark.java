@@ -0,0 +1,51 @@
+package com.guuidea.component.ip.benchmark;
+
+import com.guuidea.component.ip.util.IpUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IP文本解析：ip2Long(String)与不装箱的parse(CharSequence)
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IpParseBenchmark {
+    private static final int COUNT = 4096;
+
+    private String[] ips;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1L);
+        ips = new String[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            ips[i] = (1 + random.nextInt(223)) + "." + random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256);
+        }
+    }
+
+    @Benchmark
+    public long ip2Long() throws Exception {
+        return IpUtil.ip2Long(ips[next++ & (COUNT - 1)]);
+    }
+
+    @Benchmark
+    public long parse() {
+        return IpUtil.parse(ips[next++ & (COUNT - 1)]);
+    }
+}
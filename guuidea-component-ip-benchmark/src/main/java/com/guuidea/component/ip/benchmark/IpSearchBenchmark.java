@@ -0,0 +1,89 @@
+package com.guuidea.component.ip.benchmark;
+
+import com.guuidea.component.ip.domain.IpRange;
+import com.guuidea.component.ip.domain.IpTableHolder;
+import com.guuidea.component.ip.strategy.SearchDataStragtegy;
+import com.guuidea.component.ip.util.EnumUtil;
+import com.guuidea.component.ip.util.IpSnapshotUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 各检索方式的单IP查询，IP段表与查询IP由SyntheticIpTable生成
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class IpSearchBenchmark {
+    /**
+     * 查询IP的数量，2的幂
+     */
+    private static final int KEY_COUNT = 1 << 20;
+
+    @Param({"BINARY", "ARRAY", "MAPPED", "DIR_24", "DIR_16", "EYTZINGER"})
+    public String searchType;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"UNIFORM", "ZIPF"})
+    public String distribution;
+
+    private SearchDataStragtegy strategy;
+    private IpTableHolder holder;
+    private long[] keys;
+    private File snapshot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        holder = SyntheticIpTable.build(size, 1L);
+        keys = SyntheticIpTable.keys(holder.getIpRangeIndex(), KeyDistribution.valueOf(distribution), KEY_COUNT, 2L);
+        EnumUtil.SearchTypeStrategyEnum searchTypeEnum = EnumUtil.SearchTypeStrategyEnum.valueOf(searchType);
+        if (searchTypeEnum == EnumUtil.SearchTypeStrategyEnum.MAPPED) {
+            snapshot = File.createTempFile("ip-benchmark", ".snapshot");
+            IpSnapshotUtil.export(holder, snapshot);
+            holder = new IpTableHolder();
+            holder.setMappedIpTable(IpSnapshotUtil.map(snapshot));
+        }
+        strategy = searchTypeEnum.getSearchDataStragtegy();
+        strategy.prepare(holder);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (snapshot != null) {
+            snapshot.delete();
+        }
+    }
+
+    /**
+     * 每个线程按顺序循环读取查询IP
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public IpRange search(Cursor cursor) {
+        return strategy.search(holder, keys[cursor.next++ & (KEY_COUNT - 1)]);
+    }
+}
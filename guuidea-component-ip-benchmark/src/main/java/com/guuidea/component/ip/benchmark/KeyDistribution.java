@@ -0,0 +1,15 @@
+package com.guuidea.component.ip.benchmark;
+
+/**
+ * 查询IP的分布
+ */
+public enum KeyDistribution {
+    /**
+     * 在整个IP段表覆盖的区间内均匀分布，包含未命中的空隙
+     */
+    UNIFORM,
+    /**
+     * 按Zipf分布集中在少量IP段上，模拟少量出口IP占大部分流量的场景
+     */
+    ZIPF
+}
@@ -0,0 +1,96 @@
+package com.guuidea.component.ip.benchmark;
+
+import com.guuidea.component.ip.domain.IpRangeIndex;
+import com.guuidea.component.ip.domain.IpTableHolder;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 生成基准测试用的IP段表与查询IP，相同的参数与种子生成相同的数据，不依赖数据库
+ */
+public class SyntheticIpTable {
+    private static final long FIRST_IP = 1L << 24;
+    private static final long LAST_IP = 0xDFFFFFFFL;
+    private static final double ZIPF_EXPONENT = 1.1;
+
+    private SyntheticIpTable() {
+    }
+
+    /**
+     * 生成均匀铺满1.0.0.0到223.255.255.255的IP段表，约10%的IP段之后留有空隙
+     * @param size IP段数量
+     * @param seed
+     * @return
+     */
+    public static IpTableHolder build(int size, long seed) {
+        Random random = new Random(seed);
+        long average = (LAST_IP - FIRST_IP) / size;
+        IpRangeIndex.Builder builder = new IpRangeIndex.Builder(size);
+        long start = FIRST_IP;
+        for (int i = 0; i < size; i++) {
+            long length = Math.max(1, average / 2 + (long) (random.nextDouble() * average / 2));
+            long end = i == size - 1 ? LAST_IP : Math.min(LAST_IP, start + length - 1);
+            builder.add(start, end, random.nextInt(34), random.nextInt(400), random.nextInt(10) == 0 ? random.nextInt(200) : 0, null, null);
+            if (end == LAST_IP) {
+                break;
+            }
+            start = end + 1 + (random.nextInt(10) == 0 ? average - length : 0);
+            if (start > LAST_IP) {
+                break;
+            }
+        }
+        IpTableHolder holder = new IpTableHolder();
+        holder.setIpRangeIndex(builder.build());
+        return holder;
+    }
+
+    /**
+     * 生成查询IP
+     * @param index IP段表
+     * @param distribution 分布
+     * @param count 数量
+     * @param seed
+     * @return
+     */
+    public static long[] keys(IpRangeIndex index, KeyDistribution distribution, int count, long seed) {
+        Random random = new Random(seed);
+        long[] keys = new long[count];
+        if (distribution == KeyDistribution.UNIFORM) {
+            long from = index.getStart(0);
+            long span = index.getEnd(index.size() - 1) - from + 1;
+            for (int i = 0; i < count; i++) {
+                keys[i] = from + (long) (random.nextDouble() * span);
+            }
+            return keys;
+        }
+        // 第k热的IP段权重为1/k^s，热度顺序随机打乱，避免热点集中在表的一端
+        int size = index.size();
+        double[] cumulative = new double[size];
+        double sum = 0;
+        for (int k = 0; k < size; k++) {
+            sum += 1 / Math.pow(k + 1, ZIPF_EXPONENT);
+            cumulative[k] = sum;
+        }
+        int[] ranks = new int[size];
+        for (int i = 0; i < size; i++) {
+            ranks[i] = i;
+        }
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = ranks[i];
+            ranks[i] = ranks[j];
+            ranks[j] = swap;
+        }
+        for (int i = 0; i < count; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            if (rank < 0) {
+                rank = Math.min(-rank - 1, size - 1);
+            }
+            int slot = ranks[rank];
+            long start = index.getStart(slot);
+            keys[i] = start + (long) (random.nextDouble() * (index.getEnd(slot) - start + 1));
+        }
+        return keys;
+    }
+}
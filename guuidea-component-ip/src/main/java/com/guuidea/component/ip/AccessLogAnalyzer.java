@@ -0,0 +1,625 @@
+package com.guuidea.component.ip;
+
+import com.guuidea.component.ip.domain.IPProviderInfo;
+import com.guuidea.component.ip.domain.IpRangeIndex;
+import com.guuidea.component.ip.domain.IpTableHolder;
+import com.guuidea.component.ip.domain.Ipv6RangeIndex;
+import com.guuidea.component.ip.domain.MappedIpTable;
+import com.guuidea.component.ip.domain.RegionDictionary;
+import com.guuidea.component.ip.util.EnumUtil;
+import com.guuidea.component.ip.util.IpFileParser;
+import com.guuidea.component.ip.util.IpUtil;
+import com.guuidea.component.ip.util.ParallelUtil;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * 访问日志地区分析：日志文件按字节区间切分为多块，每块单独内存映射并由一个线程处理，
+ * 在字节上直接定位并解析客户端IP，每攒满一批后批量查询。可按地区汇总访问次数，或在每行末尾追加地区信息。
+ * IPv6客户端IP逐个通过IPv6表查询，IP表未加载IPv6数据时计入UNKNOWN。
+ * 每个线程只持有一批IP与计数数组，内存占用与日志大小无关
+ */
+public class AccessLogAnalyzer {
+    /**
+     * 未命中或IP无效的行使用的地区
+     */
+    public static final String UNKNOWN = "-";
+    private static final int BATCH_SIZE = 8192;
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    private static final long MAX_CHUNK_SIZE = 1 << 30;
+    /**
+     * 内嵌IPv4的IPv6地址最长45个字符
+     */
+    private static final int MAX_IP_LENGTH = 45;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * 汇总维度
+     */
+    public enum GroupBy {
+        /**
+         * 国家代码，没有时为国家id
+         */
+        COUNTRY,
+        PROVINCE,
+        CITY,
+        /**
+         * 国家、省份、城市，以制表符分隔
+         */
+        REGION
+    }
+
+    private final IpLookupService service;
+    private int ipField;
+
+    public AccessLogAnalyzer(IpLookupService service) {
+        this.service = service;
+    }
+
+    /**
+     * 客户端IP所在的字段，字段以空格或制表符分隔，默认为第0个字段(nginx/apache默认格式)
+     * @param ipField
+     */
+    public void setIpField(int ipField) {
+        if (ipField < 0) {
+            throw new IllegalArgumentException("无效的字段序号 [" + ipField + "].");
+        }
+        this.ipField = ipField;
+    }
+
+    /**
+     * 按地区汇总访问次数
+     * @param log 日志文件
+     * @param groupBy 汇总维度
+     * @return 地区到访问次数，按次数从大到小排列，未命中或IP无效的行计入UNKNOWN
+     * @throws IOException
+     */
+    public Map<String, Long> aggregate(File log, GroupBy groupBy) throws IOException {
+        IpTableHolder holder = loaded();
+        final Groups groups = new Groups(holder, groupBy);
+        List<long[]> results = run(log, holder, groups, null);
+        long[] counts = new long[groups.keys.size() + 1];
+        for (long[] result : results) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += result[i];
+            }
+        }
+        List<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>();
+        Map<String, Long> merged = new HashMap<String, Long>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                String key = i < groups.keys.size() ? groups.keys.get(i) : UNKNOWN;
+                Long previous = merged.get(key);
+                merged.put(key, previous == null ? counts[i] : previous + counts[i]);
+            }
+        }
+        entries.addAll(merged.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+            @Override
+            public int compare(Map.Entry<String, Long> o1, Map.Entry<String, Long> o2) {
+                return o2.getValue().compareTo(o1.getValue());
+            }
+        });
+        Map<String, Long> sorted = new LinkedHashMap<String, Long>();
+        for (Map.Entry<String, Long> entry : entries) {
+            sorted.put(entry.getKey(), entry.getValue());
+        }
+        return sorted;
+    }
+
+    /**
+     * 在每行末尾追加制表符分隔的国家、省份、城市后写入输出文件，行顺序不变。
+     * 各块先写入输出文件所在目录的临时文件，全部完成后按顺序拼接
+     * @param log 日志文件
+     * @param out 输出文件
+     * @return 处理的行数
+     * @throws IOException
+     */
+    public long enrich(File log, File out) throws IOException {
+        IpTableHolder holder = loaded();
+        Groups groups = new Groups(holder, GroupBy.REGION);
+        File directory = out.getAbsoluteFile().getParentFile();
+        List<long[]> results;
+        List<File> parts = new ArrayList<File>();
+        try {
+            results = run(log, holder, groups, new PartFiles(directory, parts));
+            FileOutputStream output = new FileOutputStream(out);
+            try {
+                FileChannel target = output.getChannel();
+                for (File part : parts) {
+                    FileInputStream input = new FileInputStream(part);
+                    try {
+                        FileChannel source = input.getChannel();
+                        long position = 0;
+                        long size = source.size();
+                        while (position < size) {
+                            position += source.transferTo(position, size - position, target);
+                        }
+                    } finally {
+                        input.close();
+                    }
+                }
+            } finally {
+                output.close();
+            }
+        } finally {
+            for (File part : parts) {
+                part.delete();
+            }
+        }
+        long lines = 0;
+        for (long[] result : results) {
+            for (long count : result) {
+                lines += count;
+            }
+        }
+        return lines;
+    }
+
+    private IpTableHolder loaded() {
+        IpTableHolder holder = service.getIpTableHolder();
+        if (holder == null) {
+            throw new IllegalStateException("IP表未加载");
+        }
+        return holder;
+    }
+
+    /**
+     * 切分并处理日志文件，返回每块的计数
+     */
+    private List<long[]> run(File log, IpTableHolder holder, Groups groups, PartFiles partFiles) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(log, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            long size = channel.size();
+            long chunks = Math.min(size / MIN_CHUNK_SIZE, ParallelUtil.isParallel() ? Runtime.getRuntime().availableProcessors() * 4 : 1);
+            // 单次映射不能超过2GB
+            chunks = Math.max(Math.max(chunks, 1), size / MAX_CHUNK_SIZE + 1);
+            List<ChunkTask> tasks = new ArrayList<ChunkTask>((int) chunks);
+            for (long i = 0; i < chunks; i++) {
+                tasks.add(new ChunkTask(channel, size, size * i / chunks, size * (i + 1) / chunks, holder, groups,
+                        partFiles == null ? null : partFiles.create()));
+            }
+            List<long[]> results = new ArrayList<long[]>(tasks.size());
+            if (tasks.size() == 1) {
+                results.add(tasks.get(0).call());
+            } else {
+                for (Future<long[]> future : ParallelUtil.getPool().invokeAll(tasks)) {
+                    results.add(getResult(future));
+                }
+            }
+            return results;
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static long[] getResult(Future<long[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("分析日志被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * IP段下标到汇总维度的映射，按地区字典为每个地区生成一次key，不为IP段创建对象
+     */
+    private static class Groups {
+        private final int[] slotGroups;
+        private final int[] ipv6RegionGroups;
+        private final Ipv6RangeIndex ipv6RangeIndex;
+        private final List<String> keys = new ArrayList<String>();
+        private final Map<String, Integer> groupIds = new HashMap<String, Integer>();
+        private final byte[][] suffixes;
+
+        Groups(IpTableHolder holder, GroupBy groupBy) {
+            int baseSize = holder.getBaseSize();
+            IpRangeIndex deltaIndex = holder.getDeltaIndex();
+            slotGroups = new int[baseSize + (deltaIndex == null ? 0 : deltaIndex.size())];
+            IpRangeIndex index = holder.getIpRangeIndex();
+            MappedIpTable table = holder.getMappedIpTable();
+            if (index != null) {
+                int[] regionGroups = regionGroups(index.getRegions(), groupBy);
+                for (int slot = 0; slot < baseSize; slot++) {
+                    slotGroups[slot] = regionGroups[index.getRegionIndex(slot)];
+                }
+            } else if (table != null) {
+                int[] regionGroups = regionGroups(table.getRegions(), groupBy);
+                for (int slot = 0; slot < baseSize; slot++) {
+                    slotGroups[slot] = regionGroups[table.getRegionIndex(slot)];
+                }
+            }
+            if (deltaIndex != null) {
+                int[] regionGroups = regionGroups(deltaIndex.getRegions(), groupBy);
+                for (int slot = 0; slot < deltaIndex.size(); slot++) {
+                    slotGroups[baseSize + slot] = regionGroups[deltaIndex.getRegionIndex(slot)];
+                }
+            }
+            ipv6RangeIndex = holder.getIpv6RangeIndex();
+            ipv6RegionGroups = ipv6RangeIndex == null ? null : regionGroups(ipv6RangeIndex.getRegions(), groupBy);
+            suffixes = new byte[keys.size() + 1][];
+            for (int i = 0; i < keys.size(); i++) {
+                suffixes[i] = ("\t" + keys.get(i) + "\n").getBytes(UTF_8);
+            }
+            suffixes[keys.size()] = ("\t" + UNKNOWN + "\t" + UNKNOWN + "\t" + UNKNOWN + "\n").getBytes(UTF_8);
+        }
+
+        int group(int slot) {
+            return slot < 0 ? keys.size() : slotGroups[slot];
+        }
+
+        int ipv6Group(long hi, long lo) {
+            int slot = ipv6RangeIndex == null ? -1 : ipv6RangeIndex.indexOf(hi, lo);
+            return slot < 0 ? keys.size() : ipv6RegionGroups[ipv6RangeIndex.getRegionIndex(slot)];
+        }
+
+        private int[] regionGroups(RegionDictionary regions, GroupBy groupBy) {
+            int[] regionGroups = new int[regions.size()];
+            for (int region = 0; region < regionGroups.length; region++) {
+                String key = key(regions, region, groupBy);
+                Integer group = groupIds.get(key);
+                if (group == null) {
+                    group = keys.size();
+                    groupIds.put(key, group);
+                    keys.add(key);
+                }
+                regionGroups[region] = group;
+            }
+            return regionGroups;
+        }
+
+        private static String key(RegionDictionary regions, int region, GroupBy groupBy) {
+            String country = regions.getCountryCode(region) != null ? regions.getCountryCode(region) : id(regions.getCountryId(region));
+            switch (groupBy) {
+                case COUNTRY:
+                    return country;
+                case PROVINCE:
+                    return id(regions.getProvinceId(region));
+                case CITY:
+                    return id(regions.getCityId(region));
+                default:
+                    return country + "\t" + id(regions.getProvinceId(region)) + "\t" + id(regions.getCityId(region));
+            }
+        }
+
+        private static String id(int id) {
+            return id < 0 ? UNKNOWN : String.valueOf(id);
+        }
+    }
+
+    /**
+     * 补全行的临时文件，按块的顺序创建
+     */
+    private static class PartFiles {
+        private final File directory;
+        private final List<File> parts;
+
+        PartFiles(File directory, List<File> parts) {
+            this.directory = directory;
+            this.parts = parts;
+        }
+
+        File create() throws IOException {
+            File part = File.createTempFile("access-log-", ".part", directory);
+            parts.add(part);
+            return part;
+        }
+    }
+
+    /**
+     * 处理[from, to)区间内开始的所有行，返回各汇总维度的行数，最后一个为未命中
+     */
+    private class ChunkTask implements Callable<long[]> {
+        private final FileChannel channel;
+        private final long fileSize;
+        private final long from;
+        private final long to;
+        private final IpTableHolder holder;
+        private final Groups groups;
+        private final File part;
+        private final long[] ips = new long[BATCH_SIZE];
+        private final int[] slots = new int[BATCH_SIZE];
+        private final int[] lineStarts = new int[BATCH_SIZE];
+        private final int[] lineEnds = new int[BATCH_SIZE];
+        /**
+         * 已按IPv6查询到的汇总维度，-1表示需按批量查询结果确定
+         */
+        private final int[] lineGroups = new int[BATCH_SIZE];
+        private final byte[] ip = new byte[MAX_IP_LENGTH];
+        private final AsciiSequence ipText = new AsciiSequence(ip);
+        private final long[] ipv6 = new long[2];
+        private byte[] line = new byte[256];
+        private MappedByteBuffer buffer;
+        private OutputStream output;
+        private long[] counts;
+
+        ChunkTask(FileChannel channel, long fileSize, long from, long to, IpTableHolder holder, Groups groups, File part) {
+            this.channel = channel;
+            this.fileSize = fileSize;
+            this.from = from;
+            this.to = to;
+            this.holder = holder;
+            this.groups = groups;
+            this.part = part;
+        }
+
+        @Override
+        public long[] call() throws IOException {
+            counts = new long[groups.keys.size() + 1];
+            // 多映射前一个字节用于判断块起点是否恰好为行首，多映射MAX_LINE_LENGTH用于读完跨越边界的行
+            long mapFrom = Math.max(0, from - 1);
+            long mapTo = Math.min(fileSize, to + IpFileParser.MAX_LINE_LENGTH);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, mapFrom, mapTo - mapFrom);
+            int limit = (int) (mapTo - mapFrom);
+            int end = (int) (to - mapFrom);
+            int pos = (int) (from - mapFrom);
+            if (from > 0 && buffer.get(pos - 1) != '\n') {
+                while (pos < limit && buffer.get(pos) != '\n') {
+                    pos++;
+                }
+                pos++;
+            }
+            output = part == null ? null : new BufferedOutputStream(new FileOutputStream(part), 1 << 16);
+            try {
+                int batch = 0;
+                while (pos < end) {
+                    int lineEnd = pos;
+                    while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                        lineEnd++;
+                    }
+                    if (lineEnd == limit && mapTo < fileSize) {
+                        throw new IllegalArgumentException("日志行长度超过" + IpFileParser.MAX_LINE_LENGTH + "字节 [offset=" + (mapFrom + pos) + "].");
+                    }
+                    int length = lineEnd - pos;
+                    if (length > 0 && buffer.get(lineEnd - 1) == '\r') {
+                        length--;
+                    }
+                    lineGroups[batch] = -1;
+                    ips[batch] = parseIp(pos, pos + length, batch);
+                    lineStarts[batch] = pos;
+                    lineEnds[batch] = pos + length;
+                    if (++batch == BATCH_SIZE) {
+                        flush(batch);
+                        batch = 0;
+                    }
+                    pos = lineEnd + 1;
+                }
+                if (batch > 0) {
+                    flush(batch);
+                }
+            } finally {
+                if (output != null) {
+                    output.close();
+                }
+            }
+            return counts;
+        }
+
+        private void flush(int batch) throws IOException {
+            if (batch == BATCH_SIZE) {
+                service.search(holder, ips, slots);
+            } else {
+                int[] result = new int[batch];
+                service.search(holder, Arrays.copyOf(ips, batch), result);
+                System.arraycopy(result, 0, slots, 0, batch);
+            }
+            for (int i = 0; i < batch; i++) {
+                int group = lineGroups[i] >= 0 ? lineGroups[i] : groups.group(slots[i]);
+                counts[group]++;
+                if (output != null) {
+                    int length = lineEnds[i] - lineStarts[i];
+                    if (length > line.length) {
+                        line = new byte[Math.max(length, line.length * 2)];
+                    }
+                    buffer.position(lineStarts[i]);
+                    buffer.get(line, 0, length);
+                    output.write(line, 0, length);
+                    output.write(groups.suffixes[group]);
+                }
+            }
+        }
+
+        /**
+         * 跳过ipField个以空格或制表符分隔的字段，去掉引号或方括号后解析IP，其后的端口等内容被忽略。
+         * IPv4映射地址按IPv4返回，其他IPv6地址直接查询并记入lineGroups，返回INVALID_IP使其不参与批量查询
+         */
+        private long parseIp(int from, int to, int batch) {
+            int pos = from;
+            for (int field = 0; field < ipField; field++) {
+                while (pos < to && !isBlank(buffer.get(pos))) {
+                    pos++;
+                }
+                while (pos < to && isBlank(buffer.get(pos))) {
+                    pos++;
+                }
+            }
+            while (pos < to && (buffer.get(pos) == '"' || buffer.get(pos) == '[')) {
+                pos++;
+            }
+            int length = 0;
+            boolean colon = false;
+            while (pos < to && length < MAX_IP_LENGTH) {
+                byte b = buffer.get(pos);
+                if (b == ':') {
+                    if (!colon && isIpv4Prefix(length)) {
+                        // 1.2.3.4:8080中的端口
+                        break;
+                    }
+                    colon = true;
+                } else if (b != '.' && hexDigit(b) < 0) {
+                    break;
+                }
+                ip[length++] = b;
+                pos++;
+            }
+            if (!colon) {
+                int ipv4Length = 0;
+                while (ipv4Length < length && (ip[ipv4Length] == '.' || (ip[ipv4Length] >= '0' && ip[ipv4Length] <= '9'))) {
+                    ipv4Length++;
+                }
+                return ipv4Length == 0 ? IpUtil.INVALID_IP : IpUtil.parse(ip, 0, ipv4Length);
+            }
+            ipText.length = length;
+            if (!IpUtil.parseIpv6(ipText, ipv6)) {
+                return IpUtil.INVALID_IP;
+            }
+            if (IpUtil.isIpv4Mapped(ipv6[0], ipv6[1])) {
+                return IpUtil.ipv4OfMapped(ipv6[1]);
+            }
+            lineGroups[batch] = groups.ipv6Group(ipv6[0], ipv6[1]);
+            return IpUtil.INVALID_IP;
+        }
+
+        /**
+         * 已读取的部分是否为含'.'的点分IPv4
+         */
+        private boolean isIpv4Prefix(int length) {
+            boolean dot = false;
+            for (int i = 0; i < length; i++) {
+                if (ip[i] == '.') {
+                    dot = true;
+                } else if (ip[i] < '0' || ip[i] > '9') {
+                    return false;
+                }
+            }
+            return dot;
+        }
+    }
+
+    private static int hexDigit(byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        }
+        if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        }
+        if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * 以ASCII字节数组作为字符序列，供IPv6解析复用，不创建字符串
+     */
+    private static class AsciiSequence implements CharSequence {
+        private final byte[] bytes;
+        private int length;
+
+        AsciiSequence(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) bytes[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(bytes, start, end - start, UTF_8);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, 0, length, UTF_8);
+        }
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    /**
+     * 命令行入口：
+     * AccessLogAnalyzer (--table IP段文件 | --snapshot 快照文件) --log 日志文件 [--field 0] [--group country|province|city|region] [--enrich 输出文件]
+     * 未指定--enrich时输出各地区的访问次数
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<String, String>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                usage();
+                return;
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        String log = options.get("log");
+        if (log == null || (options.get("table") == null) == (options.get("snapshot") == null) || args.length % 2 != 0) {
+            usage();
+            return;
+        }
+        IPProviderInfo info = new IPProviderInfo();
+        IpLookupService service;
+        if (options.get("table") != null) {
+            info.setFilePath(options.get("table"));
+            service = new IpLookupService(EnumUtil.DataSourceStrategyEnum.FILE, EnumUtil.SearchTypeStrategyEnum.BINARY,
+                    Collections.singletonList(info));
+        } else {
+            info.setSnapshotPath(options.get("snapshot"));
+            service = new IpLookupService(EnumUtil.DataSourceStrategyEnum.SNAPSHOT, EnumUtil.SearchTypeStrategyEnum.MAPPED,
+                    Collections.singletonList(info));
+        }
+        service.load();
+        AccessLogAnalyzer analyzer = new AccessLogAnalyzer(service);
+        if (options.get("field") != null) {
+            analyzer.setIpField(Integer.parseInt(options.get("field")));
+        }
+        long begin = System.currentTimeMillis();
+        if (options.get("enrich") != null) {
+            long lines = analyzer.enrich(new File(log), new File(options.get("enrich")));
+            System.out.println(lines + " lines in " + (System.currentTimeMillis() - begin) + "ms");
+        } else {
+            String group = options.get("group");
+            GroupBy groupBy = group == null ? GroupBy.COUNTRY : GroupBy.valueOf(group.toUpperCase());
+            for (Map.Entry<String, Long> entry : analyzer.aggregate(new File(log), groupBy).entrySet()) {
+                System.out.println(entry.getKey() + "\t" + entry.getValue());
+            }
+            System.err.println("elapsed " + (System.currentTimeMillis() - begin) + "ms");
+        }
+        service.shutdown();
+    }
+
+    private static void usage() {
+        System.err.println("usage: AccessLogAnalyzer (--table <file> | --snapshot <file>) --log <file> [--field 0]"
+                + " [--group country|province|city|region] [--enrich <out>]");
+    }
+}
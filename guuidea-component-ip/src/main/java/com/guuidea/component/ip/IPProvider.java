@@ -1,55 +1,220 @@
 package com.guuidea.component.ip;
 
+import com.guuidea.component.ip.cache.HotIpCache;
 import com.guuidea.component.ip.domain.IPProviderInfo;
 import com.guuidea.component.ip.domain.IpRange;
 import com.guuidea.component.ip.domain.IpTableHolder;
-import com.guuidea.component.ip.strategy.DataStrategy;
-import com.guuidea.component.ip.strategy.SearchDataStragtegy;
+import com.guuidea.component.ip.domain.RegionSet;
 import com.guuidea.component.ip.util.EnumUtil;
 import com.guuidea.component.ip.util.IpUtil;
 
+import java.io.IOException;
 import java.sql.SQLException;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Future;
 
 /**
+ * 静态入口，委托给一个默认的IpLookupService实例；需要在同一JVM中使用多个IP库时直接创建IpLookupService
  * @Author: ll
  * @Date: 2020/4/14
  */
 public class IPProvider {
-    private DataStrategy dataStrategy;
-    private SearchDataStragtegy searchDataStragtegy;
-    public static List<IpTableHolder> ipRangeList = new ArrayList<IpTableHolder>();
-    private List<IPProviderInfo> ipProviderInfos;
+    /**
+     * 仅为兼容保留，始终只包含当前使用的IP表，请使用getIpTableHolder()
+     */
+    @Deprecated
+    public static volatile List<IpTableHolder> ipRangeList = Collections.emptyList();
 
-    private IPProvider(EnumUtil.DataSourceStrategyEnum dataSourceEnum, EnumUtil.SearchTypeStrategyEnum searchTypeEnum, List<IPProviderInfo> ipProviderInfo){
-        this.dataStrategy = dataSourceEnum.getDataStrategy();
-        this.searchDataStragtegy = searchTypeEnum.getSearchDataStragtegy();
-        this.ipProviderInfos = ipProviderInfo;
-    }
+    private static volatile IpLookupService defaultService;
 
+    /**
+     * 热点IP缓存，默认关闭；可在初始化之前开启，重新初始化时沿用
+     */
+    private static volatile HotIpCache hotIpCache;
 
     private IPProvider(){
 
     }
 
-    private static IPProvider ipProvider;
+    /**
+     * 初始化默认实例，并发调用时依次执行，最后完成的一次生效
+     * @param dataSourceEnum
+     * @param searchTypeEnum
+     * @param ipProviderInfos
+     * @throws SQLException
+     * @throws ClassNotFoundException
+     */
+    public static synchronized void init(EnumUtil.DataSourceStrategyEnum dataSourceEnum, EnumUtil.SearchTypeStrategyEnum searchTypeEnum, List<IPProviderInfo> ipProviderInfos) throws SQLException, ClassNotFoundException{
+        IpLookupService service = new IpLookupService(dataSourceEnum, searchTypeEnum, ipProviderInfos) {
+            @Override
+            protected void published(IpTableHolder holder) {
+                if (defaultService == this) {
+                    ipRangeList = Collections.singletonList(holder);
+                }
+            }
+        };
+        service.setHotIpCache(hotIpCache);
+        service.load();
+        IpLookupService previous = defaultService;
+        defaultService = service;
+        ipRangeList = Collections.singletonList(service.getIpTableHolder());
+        if (previous != null) {
+            previous.shutdown();
+        }
+        service.registerMBean("default");
+    }
+
+    /**
+     * 获取默认实例
+     * @return
+     */
+    public static IpLookupService getDefault() {
+        return checkInit();
+    }
+
+    /**
+     * 使用初始化时的配置在后台重新加载IP表
+     * @return
+     */
+    public static Future<IpTableHolder> reload() {
+        return checkInit().reload();
+    }
+
+    /**
+     * 在后台线程重新加载IP表，加载期间查询继续使用旧表，加载完成后一次性替换，查询无需加锁也不会停顿
+     * @param ipProviderInfos
+     * @return 加载完成后返回新的IP表，加载失败时旧表保持不变
+     */
+    public static Future<IpTableHolder> reload(List<IPProviderInfo> ipProviderInfos) {
+        return checkInit().reload(ipProviderInfos);
+    }
+
+    /**
+     * 在后台线程增量加载变化的IP段，需在IPProviderInfo中配置版本列
+     * @return 替换后的IP表，没有变化时为当前IP表
+     */
+    public static Future<IpTableHolder> refresh() {
+        return checkInit().refresh();
+    }
+
+    /**
+     * 开启热点IP缓存，缓存位于检索方式之前，适用于少量IP占大部分查询的场景
+     * @param capacity 缓存容量
+     */
+    public static void enableHotIpCache(int capacity) {
+        setHotIpCache(new HotIpCache(capacity));
+    }
+
+    public static void disableHotIpCache() {
+        setHotIpCache(null);
+    }
+
+    private static synchronized void setHotIpCache(HotIpCache cache) {
+        hotIpCache = cache;
+        IpLookupService service = defaultService;
+        if (service != null) {
+            service.setHotIpCache(cache);
+        }
+    }
+
+    /**
+     * 获取热点IP缓存，可读取命中/未命中次数，未开启时返回null
+     * @return
+     */
+    public static HotIpCache getHotIpCache() {
+        return hotIpCache;
+    }
 
-    public List<IPProviderInfo> getIpProviderInfos() {
-        return ipProviderInfos;
+    private static IpLookupService checkInit() {
+        IpLookupService service = defaultService;
+        if (service == null) {
+            throw new IllegalStateException("IPProvider未初始化");
+        }
+        return service;
     }
 
-    public static void init(EnumUtil.DataSourceStrategyEnum dataSourceEnum, EnumUtil.SearchTypeStrategyEnum searchTypeEnum, List<IPProviderInfo> ipProviderInfos) throws SQLException, ClassNotFoundException{
-        ipProvider =  new IPProvider(dataSourceEnum, searchTypeEnum, ipProviderInfos);
-        ipProvider.dataStrategy.load(ipProvider.getIpProviderInfos());
+    public static IpTableHolder getIpTableHolder() {
+        IpLookupService service = defaultService;
+        return service == null ? null : service.getIpTableHolder();
     }
 
     public static IpRange search(Long ip){
-        return ipProvider.searchDataStragtegy.search(ip);
+        return search(ip.longValue());
+    }
+
+    public static IpRange search(long ip){
+        return checkInit().search(ip);
+    }
+
+    /**
+     * 查询IPv6地址，IPv4映射地址(::ffff:a.b.c.d)使用IPv4表查询
+     * @param hi 高64位
+     * @param lo 低64位
+     * @return
+     */
+    public static IpRange search(long hi, long lo) {
+        return checkInit().search(hi, lo);
+    }
+
+    /**
+     * 查询IPv4或IPv6文本地址，包含':'时按IPv6解析
+     * @param ip
+     * @return 地址无效或未命中时返回null
+     */
+    public static IpRange search(CharSequence ip) {
+        return checkInit().search(ip);
+    }
+
+    /**
+     * 批量查询IP所在的IP段下标，数量较大时排序后归并并拆分到多个核上执行，不为每个IP创建对象
+     * @param ips IP数值
+     * @param outRegionIdx 查询结果，与ips一一对应，未命中或IP无效时为-1
+     * @return 结果下标所对应的IP表，通过IpTableHolder.getIpRange(index)获取IP段
+     */
+    public static IpTableHolder search(long[] ips, int[] outRegionIdx) {
+        return checkInit().search(ips, outRegionIdx);
+    }
+
+    /**
+     * 在默认实例上注册地区集合，见IpLookupService.registerRegionSet
+     * @param name
+     * @param regionSet
+     */
+    public static void registerRegionSet(String name, RegionSet regionSet) {
+        checkInit().registerRegionSet(name, regionSet);
+    }
+
+    /**
+     * 判断IPv4地址是否属于已注册的地区集合
+     * @param name
+     * @param ip
+     * @return
+     */
+    public static boolean contains(String name, long ip) {
+        return checkInit().contains(name, ip);
+    }
+
+    /**
+     * 将当前加载的IP表导出为快照文件，供SNAPSHOT数据源在启动时直接映射
+     * @param path
+     * @throws IOException
+     */
+    public static void exportSnapshot(String path) throws IOException {
+        checkInit().exportSnapshot(path);
     }
 
     public static Long ip2Long(String ip) throws Exception{
         return IpUtil.ip2Long(ip);
     }
 
+    /**
+     * 将IP解析为数值，不装箱也不抛出异常
+     * @param ip
+     * @return 无效时返回IpUtil.INVALID_IP
+     */
+    public static long parseIp(CharSequence ip) {
+        return IpUtil.parse(ip);
+    }
+
 }
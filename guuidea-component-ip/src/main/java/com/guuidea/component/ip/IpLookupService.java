@@ -0,0 +1,558 @@
+package com.guuidea.component.ip;
+
+import com.guuidea.component.ip.cache.HotIpCache;
+import com.guuidea.component.ip.domain.IPProviderInfo;
+import com.guuidea.component.ip.domain.IpBitmap;
+import com.guuidea.component.ip.domain.IpRange;
+import com.guuidea.component.ip.domain.IpRangeIndex;
+import com.guuidea.component.ip.domain.IpTableDelta;
+import com.guuidea.component.ip.domain.IpTableHolder;
+import com.guuidea.component.ip.domain.MappedIpTable;
+import com.guuidea.component.ip.domain.RegionDictionary;
+import com.guuidea.component.ip.domain.RegionSet;
+import com.guuidea.component.ip.metrics.IpLookupMetrics;
+import com.guuidea.component.ip.strategy.DataStrategy;
+import com.guuidea.component.ip.strategy.DeltaDataStrategy;
+import com.guuidea.component.ip.strategy.Ipv6SearchDataStragtegy;
+import com.guuidea.component.ip.strategy.SearchDataStragtegy;
+import com.guuidea.component.ip.strategy.impl.Ipv6BinarySearch;
+import com.guuidea.component.ip.util.EnumUtil;
+import com.guuidea.component.ip.util.IpBatchSearchUtil;
+import com.guuidea.component.ip.util.IpRangeMergeUtil;
+import com.guuidea.component.ip.util.IpSnapshotUtil;
+import com.guuidea.component.ip.util.IpUtil;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * IP查询服务，每个实例持有各自的IP表、数据源、检索方式、热点缓存与数据库配置，同一个JVM中可以同时使用多个互不影响的IP库。
+ * 实例的创建、加载与查询均线程安全，多个实例可在启动时并行加载
+ */
+public class IpLookupService {
+    private final DataStrategy dataStrategy;
+    private final SearchDataStragtegy searchDataStragtegy;
+    private final Ipv6SearchDataStragtegy ipv6SearchDataStragtegy = new Ipv6BinarySearch();
+    private final List<IPProviderInfo> ipProviderInfos;
+    /**
+     * 当前使用的IP表，重新加载时整体替换
+     */
+    private volatile IpTableHolder ipTableHolder;
+    /**
+     * 热点IP缓存，默认关闭
+     */
+    private volatile HotIpCache hotIpCache;
+    /**
+     * 后台加载IP表的单线程，首次重新加载时创建，保证同一实例同一时间只有一个重新加载任务在执行
+     */
+    private ExecutorService reloadExecutor;
+    /**
+     * 增量IP段超过该数量时与全量索引合并
+     */
+    private volatile int compactThreshold = 4096;
+    private final IpLookupMetrics metrics = new IpLookupMetrics(this);
+    /**
+     * 已注册的地区集合，加载新的IP表时为每个集合构建位图
+     */
+    private final ConcurrentMap<String, RegionSet> regionSets = new ConcurrentHashMap<String, RegionSet>();
+    /**
+     * 已注册的MBean名称
+     */
+    private ObjectName objectName;
+
+    public IpLookupService(EnumUtil.DataSourceStrategyEnum dataSourceEnum, EnumUtil.SearchTypeStrategyEnum searchTypeEnum,
+                           List<IPProviderInfo> ipProviderInfos) {
+        this(dataSourceEnum.getDataStrategy(), searchTypeEnum.getSearchDataStragtegy(), ipProviderInfos);
+    }
+
+    /**
+     * @param dataStrategy 数据源
+     * @param searchDataStragtegy 检索方式
+     * @param ipProviderInfos 数据源配置，创建时复制一份
+     */
+    public IpLookupService(DataStrategy dataStrategy, SearchDataStragtegy searchDataStragtegy, List<IPProviderInfo> ipProviderInfos) {
+        this.dataStrategy = dataStrategy;
+        this.searchDataStragtegy = searchDataStragtegy;
+        this.ipProviderInfos = Collections.unmodifiableList(new ArrayList<IPProviderInfo>(ipProviderInfos));
+    }
+
+    /**
+     * 在当前线程加载IP表
+     * @return
+     * @throws SQLException
+     * @throws ClassNotFoundException
+     */
+    public IpLookupService load() throws SQLException, ClassNotFoundException {
+        publish(loadTable(ipProviderInfos));
+        return this;
+    }
+
+    /**
+     * 使用创建时的配置在后台重新加载IP表
+     * @return
+     */
+    public Future<IpTableHolder> reload() {
+        return reload(ipProviderInfos);
+    }
+
+    /**
+     * 在后台线程重新加载IP表，加载期间查询继续使用旧表，加载完成后一次性替换，查询无需加锁也不会停顿
+     * @param ipProviderInfos
+     * @return 加载完成后返回新的IP表，加载失败时旧表保持不变
+     */
+    public Future<IpTableHolder> reload(final List<IPProviderInfo> ipProviderInfos) {
+        return getReloadExecutor().submit(new Callable<IpTableHolder>() {
+            @Override
+            public IpTableHolder call() throws Exception {
+                IpTableHolder holder = loadTable(ipProviderInfos);
+                publish(holder);
+                return holder;
+            }
+        });
+    }
+
+    /**
+     * 在后台线程增量加载版本号不小于当前IP表版本的IP段，以写时复制方式生成新的IP表后一次性替换，查询不受影响；
+     * 增量IP段超过合并阈值时与全量索引合并。数据源需实现DeltaDataStrategy。
+     * 增量IP段只会覆盖原有区间，删除的行、IP段范围的缩小及IPv6数据的修改不受支持，需通过reload()全量加载生效
+     * @return 替换后的IP表，没有变化时为当前IP表
+     */
+    public Future<IpTableHolder> refresh() {
+        if (!(dataStrategy instanceof DeltaDataStrategy)) {
+            throw new UnsupportedOperationException("数据源不支持增量加载");
+        }
+        final DeltaDataStrategy deltaDataStrategy = (DeltaDataStrategy) dataStrategy;
+        return getReloadExecutor().submit(new Callable<IpTableHolder>() {
+            @Override
+            public IpTableHolder call() throws Exception {
+                IpTableHolder current = checkLoaded();
+                long begin = System.currentTimeMillis();
+                boolean success = false;
+                IpTableDelta delta;
+                try {
+                    delta = deltaDataStrategy.loadDelta(ipProviderInfos, current.getVersion());
+                    success = true;
+                } finally {
+                    metrics.recordLoad(System.currentTimeMillis() - begin, success);
+                }
+                IpRangeIndex changed = delta.getIpRangeIndex();
+                if (changed.size() == 0) {
+                    return current;
+                }
+                IpRangeIndex deltaIndex = current.getDeltaIndex() == null ? changed
+                        : IpRangeMergeUtil.merge(new IpRangeIndex[]{changed, current.getDeltaIndex()}, false);
+                // 同一版本号的行每次都会重新读到，没有新的变化时不重新发布
+                if (delta.getVersion() == current.getVersion() && sameRanges(deltaIndex, current.getDeltaIndex())) {
+                    return current;
+                }
+                IpTableHolder holder = current.withDelta(deltaIndex, delta.getVersion());
+                if (deltaIndex.size() > compactThreshold && holder.getIpRangeIndex() != null) {
+                    holder = compact(holder);
+                }
+                publish(holder);
+                return holder;
+            }
+        });
+    }
+
+    private static boolean sameRanges(IpRangeIndex index, IpRangeIndex other) {
+        if (other == null || index.size() != other.size()) {
+            return false;
+        }
+        RegionDictionary regions = index.getRegions();
+        RegionDictionary otherRegions = other.getRegions();
+        for (int i = 0; i < index.size(); i++) {
+            int region = index.getRegionIndex(i);
+            int otherRegion = other.getRegionIndex(i);
+            if (index.getStart(i) != other.getStart(i) || index.getEnd(i) != other.getEnd(i)
+                    || regions.getProvinceId(region) != otherRegions.getProvinceId(otherRegion)
+                    || regions.getCityId(region) != otherRegions.getCityId(otherRegion)
+                    || regions.getCountryId(region) != otherRegions.getCountryId(otherRegion)
+                    || !equal(regions.getCountryName(region), otherRegions.getCountryName(otherRegion))
+                    || !equal(regions.getCountryCode(region), otherRegions.getCountryCode(otherRegion))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * 在后台线程将增量IP段合并到全量索引，快照数据源不支持合并
+     * @return 替换后的IP表
+     */
+    public Future<IpTableHolder> compact() {
+        return getReloadExecutor().submit(new Callable<IpTableHolder>() {
+            @Override
+            public IpTableHolder call() {
+                IpTableHolder current = checkLoaded();
+                if (current.getDeltaIndex() == null || current.getIpRangeIndex() == null) {
+                    return current;
+                }
+                IpTableHolder holder = compact(current);
+                publish(holder);
+                return holder;
+            }
+        });
+    }
+
+    /**
+     * 设置增量IP段的合并阈值
+     * @param compactThreshold
+     */
+    public void setCompactThreshold(int compactThreshold) {
+        this.compactThreshold = compactThreshold;
+    }
+
+    private IpTableHolder compact(IpTableHolder holder) {
+        IpTableHolder compacted = merged(holder);
+        searchDataStragtegy.prepare(compacted);
+        ipv6SearchDataStragtegy.prepare(compacted);
+        prepareRegionBitmaps(compacted);
+        return compacted;
+    }
+
+    /**
+     * 增量IP段整段覆盖全量索引中的对应区间
+     */
+    private static IpTableHolder merged(IpTableHolder holder) {
+        IpTableHolder merged = new IpTableHolder();
+        merged.setIpRangeIndex(IpRangeMergeUtil.merge(new IpRangeIndex[]{holder.getDeltaIndex(), holder.getIpRangeIndex()}, false));
+        merged.setIpv6RangeIndex(holder.getIpv6RangeIndex());
+        merged.setVersion(holder.getVersion());
+        return merged;
+    }
+
+    private IpTableHolder loadTable(List<IPProviderInfo> ipProviderInfos) throws SQLException, ClassNotFoundException {
+        long begin = System.currentTimeMillis();
+        boolean success = false;
+        try {
+            IpTableHolder holder = dataStrategy.load(ipProviderInfos);
+            searchDataStragtegy.prepare(holder);
+            ipv6SearchDataStragtegy.prepare(holder);
+            prepareRegionBitmaps(holder);
+            success = true;
+            return holder;
+        } finally {
+            metrics.recordLoad(System.currentTimeMillis() - begin, success);
+        }
+    }
+
+    private void prepareRegionBitmaps(IpTableHolder holder) {
+        for (RegionSet regionSet : regionSets.values()) {
+            holder.prepareRegionBitmap(regionSet);
+        }
+    }
+
+    private void publish(IpTableHolder holder) {
+        ipTableHolder = holder;
+        HotIpCache cache = hotIpCache;
+        if (cache != null) {
+            cache.clear();
+        }
+        published(holder);
+    }
+
+    /**
+     * 新的IP表发布后调用，子类可覆盖
+     * @param holder
+     */
+    protected void published(IpTableHolder holder) {
+    }
+
+    private synchronized ExecutorService getReloadExecutor() {
+        if (reloadExecutor == null) {
+            reloadExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "ip-table-reload");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return reloadExecutor;
+    }
+
+    /**
+     * 停止后台加载线程并注销MBean，不影响已加载的IP表继续查询
+     */
+    public synchronized void shutdown() {
+        if (reloadExecutor != null) {
+            reloadExecutor.shutdown();
+            reloadExecutor = null;
+        }
+        unregisterMBean();
+    }
+
+    /**
+     * 查询统计，可读取查询次数、未命中次数、耗时分布及IP表信息
+     * @return
+     */
+    public IpLookupMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 将查询统计注册到平台MBeanServer，名称为com.guuidea.component.ip:type=IpLookupService,name=...，同名的已有MBean会被替换
+     * @param name
+     */
+    public synchronized void registerMBean(String name) {
+        unregisterMBean();
+        try {
+            ObjectName newName = new ObjectName("com.guuidea.component.ip:type=IpLookupService,name=" + ObjectName.quote(name));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(newName)) {
+                server.unregisterMBean(newName);
+            }
+            server.registerMBean(metrics, newName);
+            objectName = newName;
+        } catch (JMException e) {
+            throw new IllegalStateException("注册MBean失败 [" + name + "].", e);
+        }
+    }
+
+    public synchronized void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("注销MBean失败 [" + objectName + "].", e);
+        } finally {
+            objectName = null;
+        }
+    }
+
+    /**
+     * 开启热点IP缓存，缓存位于检索方式之前，适用于少量IP占大部分查询的场景
+     * @param capacity 缓存容量
+     */
+    public void enableHotIpCache(int capacity) {
+        hotIpCache = new HotIpCache(capacity);
+    }
+
+    /**
+     * 使用已有的热点IP缓存，缓存按IP表区分条目，可在实例之间转移
+     * @param hotIpCache 为null时关闭缓存
+     */
+    public void setHotIpCache(HotIpCache hotIpCache) {
+        this.hotIpCache = hotIpCache;
+    }
+
+    public void disableHotIpCache() {
+        hotIpCache = null;
+    }
+
+    /**
+     * 获取热点IP缓存，可读取命中/未命中次数，未开启时返回null
+     * @return
+     */
+    public HotIpCache getHotIpCache() {
+        return hotIpCache;
+    }
+
+    public List<IPProviderInfo> getIpProviderInfos() {
+        return ipProviderInfos;
+    }
+
+    /**
+     * 当前使用的IP表，未加载时返回null
+     * @return
+     */
+    public IpTableHolder getIpTableHolder() {
+        return ipTableHolder;
+    }
+
+    private IpTableHolder checkLoaded() {
+        IpTableHolder holder = ipTableHolder;
+        if (holder == null) {
+            throw new IllegalStateException("IP表未加载");
+        }
+        return holder;
+    }
+
+    public IpRange search(long ip) {
+        long start = metrics.start();
+        IpRange ipRange = search(checkLoaded(), ip);
+        metrics.recordLookup(start, ipRange == null);
+        return ipRange;
+    }
+
+    private IpRange search(IpTableHolder holder, long ip) {
+        IpRangeIndex deltaIndex = holder.getDeltaIndex();
+        if (deltaIndex != null) {
+            int slot = deltaIndex.indexOf(ip);
+            if (slot >= 0) {
+                return deltaIndex.get(slot);
+            }
+        }
+        HotIpCache cache = hotIpCache;
+        if (cache != null) {
+            return cache.search(holder, ip, searchDataStragtegy);
+        }
+        return searchDataStragtegy.search(holder, ip);
+    }
+
+    /**
+     * 查询IPv6地址，IPv4映射地址(::ffff:a.b.c.d)使用IPv4表查询
+     * @param hi 高64位
+     * @param lo 低64位
+     * @return
+     */
+    public IpRange search(long hi, long lo) {
+        if (IpUtil.isIpv4Mapped(hi, lo)) {
+            return search(IpUtil.ipv4OfMapped(lo));
+        }
+        long start = metrics.start();
+        IpRange ipRange = ipv6SearchDataStragtegy.search(checkLoaded(), hi, lo);
+        metrics.recordLookup(start, ipRange == null);
+        return ipRange;
+    }
+
+    /**
+     * 查询IPv4或IPv6文本地址，包含':'时按IPv6解析
+     * @param ip
+     * @return 地址无效或未命中时返回null
+     */
+    public IpRange search(CharSequence ip) {
+        if (ip == null) {
+            return null;
+        }
+        for (int i = 0; i < ip.length(); i++) {
+            if (ip.charAt(i) == ':') {
+                long[] value = new long[2];
+                if (!IpUtil.parseIpv6(ip, value)) {
+                    return null;
+                }
+                return search(value[0], value[1]);
+            }
+        }
+        long value = IpUtil.parse(ip);
+        return value == IpUtil.INVALID_IP ? null : search(value);
+    }
+
+    /**
+     * 批量查询IP所在的IP段下标，数量较大时排序后归并并拆分到多个核上执行，不为每个IP创建对象
+     * @param ips IP数值
+     * @param outRegionIdx 查询结果，与ips一一对应，未命中或IP无效时为-1
+     * @return 结果下标所对应的IP表，通过IpTableHolder.getIpRange(index)获取IP段
+     */
+    public IpTableHolder search(long[] ips, int[] outRegionIdx) {
+        return search(checkLoaded(), ips, outRegionIdx);
+    }
+
+    /**
+     * 在指定的IP表上批量查询，供需要多次查询结果对应同一IP表的场景使用
+     */
+    IpTableHolder search(IpTableHolder holder, long[] ips, int[] outRegionIdx) {
+        if (holder.getIpRangeIndex() != null) {
+            IpBatchSearchUtil.search(holder.getIpRangeIndex(), ips, outRegionIdx);
+        } else {
+            if (outRegionIdx.length < ips.length) {
+                throw new IllegalArgumentException("结果数组长度不足");
+            }
+            MappedIpTable table = holder.getMappedIpTable();
+            for (int i = 0; i < ips.length; i++) {
+                outRegionIdx[i] = table == null ? -1 : table.indexOf(ips[i]);
+            }
+        }
+        IpRangeIndex deltaIndex = holder.getDeltaIndex();
+        if (deltaIndex != null) {
+            int baseSize = holder.getBaseSize();
+            for (int i = 0; i < ips.length; i++) {
+                int slot = deltaIndex.indexOf(ips[i]);
+                if (slot >= 0) {
+                    outRegionIdx[i] = baseSize + slot;
+                }
+            }
+        }
+        int missCount = 0;
+        for (int i = 0; i < ips.length; i++) {
+            if (outRegionIdx[i] < 0) {
+                missCount++;
+            }
+        }
+        metrics.recordBatch(ips.length, missCount);
+        return holder;
+    }
+
+    /**
+     * 注册地区集合，之后加载的每个IP表都会预先构建该集合的位图；已加载IP表时立即构建。同名集合会被替换
+     * @param name
+     * @param regionSet
+     */
+    public void registerRegionSet(String name, RegionSet regionSet) {
+        regionSets.put(name, regionSet);
+        IpTableHolder holder = ipTableHolder;
+        if (holder != null) {
+            holder.prepareRegionBitmap(regionSet);
+        }
+    }
+
+    public void unregisterRegionSet(String name) {
+        regionSets.remove(name);
+    }
+
+    /**
+     * 判断IPv4地址是否属于已注册的地区集合，全量部分只访问位图，不查询IP段也不创建对象；增量IP段优先
+     * @param name 地区集合名称
+     * @param ip
+     * @return
+     */
+    public boolean contains(String name, long ip) {
+        RegionSet regionSet = regionSets.get(name);
+        if (regionSet == null) {
+            throw new IllegalArgumentException("地区集合未注册 [" + name + "].");
+        }
+        IpTableHolder holder = checkLoaded();
+        IpRangeIndex deltaIndex = holder.getDeltaIndex();
+        if (deltaIndex != null) {
+            int slot = deltaIndex.indexOf(ip);
+            if (slot >= 0) {
+                return regionSet.matches(deltaIndex.getRegions(), deltaIndex.getRegionIndex(slot));
+            }
+        }
+        IpBitmap bitmap = holder.getRegionBitmap(regionSet);
+        if (bitmap == null) {
+            // 注册与重新加载并发时新IP表可能尚未构建该集合
+            bitmap = holder.prepareRegionBitmap(regionSet);
+        }
+        return bitmap.contains(ip);
+    }
+
+    /**
+     * 将当前加载的IP表导出为快照文件，供SNAPSHOT数据源在启动时直接映射
+     * @param path
+     * @throws IOException
+     */
+    public void exportSnapshot(String path) throws IOException {
+        IpTableHolder holder = checkLoaded();
+        if (holder.getDeltaIndex() != null && holder.getIpRangeIndex() != null) {
+            holder = merged(holder);
+        }
+        IpSnapshotUtil.export(holder, new File(path));
+    }
+}
@@ -0,0 +1,214 @@
+package com.guuidea.component.ip.cache;
+
+import com.guuidea.component.ip.domain.IpRange;
+import com.guuidea.component.ip.domain.IpTableHolder;
+import com.guuidea.component.ip.strategy.SearchDataStragtegy;
+import com.guuidea.component.ip.util.StripedCounter;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 热点IP缓存，固定容量、无锁，位于检索方式之前。
+ * 采用2路组相联，同一组内的两个热点IP不会互相挤出；
+ * 采用W-TinyLFU式的准入策略：以频率草图估算访问频率，只有新IP的频率高于被替换的IP时才写入，
+ * 避免大量只出现一次的IP把NAT/代理出口等热点IP挤出缓存。
+ * 频率在未命中时记录，命中时按1/16采样记录，命中路径上不再每次写共享的草图。
+ * 缓存项记录所属的IP表，IP表重新加载后旧的缓存项自动失效
+ */
+public class HotIpCache {
+    /**
+     * 缓存"查无此IP"的结果
+     */
+    private static final IpRange NOT_FOUND = new IpRange();
+    /**
+     * 命中时每16次记录一次频率
+     */
+    private static final int HIT_SAMPLE_MASK = (1 << 4) - 1;
+
+    private final AtomicReferenceArray<Entry> entries;
+    /**
+     * 组数减1，每组占entries中相邻的两项
+     */
+    private final int setMask;
+    private final FrequencySketch sketch;
+    private final StripedCounter hitCount = new StripedCounter();
+    private final StripedCounter missCount = new StripedCounter();
+
+    /**
+     * @param capacity 缓存容量，向上取整为2的幂，最小为2
+     */
+    public HotIpCache(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("无效的缓存容量 [" + capacity + "].");
+        }
+        int size = 2;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.entries = new AtomicReferenceArray<Entry>(size);
+        this.setMask = (size >>> 1) - 1;
+        this.sketch = new FrequencySketch(size);
+    }
+
+    /**
+     * 先查缓存，未命中时通过检索方式查找并按准入策略写入缓存
+     * @param holder 当前使用的IP表
+     * @param ip
+     * @param searchDataStragtegy
+     * @return
+     */
+    public IpRange search(IpTableHolder holder, long ip, SearchDataStragtegy searchDataStragtegy) {
+        int hash = spread(ip);
+        int slot = (hash & setMask) << 1;
+        Entry first = entries.get(slot);
+        Entry second = entries.get(slot + 1);
+        Entry entry = matches(first, ip, holder) ? first : matches(second, ip, holder) ? second : null;
+        if (entry != null) {
+            if ((ThreadLocalRandom.current().nextInt() & HIT_SAMPLE_MASK) == 0) {
+                sketch.increment(hash);
+            }
+            hitCount.increment();
+            return entry.ipRange == NOT_FOUND ? null : entry.ipRange;
+        }
+        missCount.increment();
+        sketch.increment(hash);
+        IpRange ipRange = searchDataStragtegy.search(holder, ip);
+        // 优先替换空位或旧IP表的缓存项，否则替换组内频率较低的一项
+        int victim;
+        if (first == null || first.holder != holder) {
+            victim = slot;
+        } else if (second == null || second.holder != holder) {
+            victim = slot + 1;
+        } else {
+            int firstFrequency = sketch.frequency(spread(first.ip));
+            int secondFrequency = sketch.frequency(spread(second.ip));
+            victim = firstFrequency <= secondFrequency ? slot : slot + 1;
+            if (sketch.frequency(hash) <= Math.min(firstFrequency, secondFrequency)) {
+                return ipRange;
+            }
+        }
+        entries.lazySet(victim, new Entry(ip, ipRange == null ? NOT_FOUND : ipRange, holder));
+        return ipRange;
+    }
+
+    private static boolean matches(Entry entry, long ip, IpTableHolder holder) {
+        return entry != null && entry.ip == ip && entry.holder == holder;
+    }
+
+    /**
+     * 清空缓存，IP表重新加载后调用以尽快释放旧表的引用
+     */
+    public void clear() {
+        for (int i = 0; i < entries.length(); i++) {
+            entries.lazySet(i, null);
+        }
+        sketch.clear();
+    }
+
+    public int getCapacity() {
+        return entries.length();
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public double getHitRate() {
+        long hits = getHitCount();
+        long total = hits + getMissCount();
+        return total == 0 ? 0D : (double) hits / total;
+    }
+
+    private static int spread(long ip) {
+        long h = ip * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static final class Entry {
+        final long ip;
+        final IpRange ipRange;
+        final IpTableHolder holder;
+
+        Entry(long ip, IpRange ipRange, IpTableHolder holder) {
+            this.ip = ip;
+            this.ipRange = ipRange;
+            this.holder = holder;
+        }
+    }
+
+    /**
+     * 4位计数的Count-Min频率草图，每个long存放16个计数器，
+     * 累计写入次数达到阈值后所有计数减半，使频率随时间衰减。
+     * 只在未命中及命中采样时写入，计数允许并发下少量丢失更新，只用于估算
+     */
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = {0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+        private final long[] table;
+        private final int tableMask;
+        private final int sampleSize;
+        private int size;
+
+        FrequencySketch(int capacity) {
+            this.table = new long[capacity];
+            this.tableMask = capacity - 1;
+            this.sampleSize = capacity * 10;
+        }
+
+        void increment(int hash) {
+            int start = (hash & 3) << 2;
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                added |= incrementAt(indexOf(hash, i), start + i);
+            }
+            if (added && ++size >= sampleSize) {
+                reset();
+            }
+        }
+
+        int frequency(int hash) {
+            int start = (hash & 3) << 2;
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < 4; i++) {
+                int count = (int) ((table[indexOf(hash, i)] >>> ((start + i) << 2)) & 0xFL);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        void clear() {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = 0L;
+            }
+            size = 0;
+        }
+
+        private boolean incrementAt(int i, int j) {
+            int offset = j << 2;
+            long mask = 0xFL << offset;
+            if ((table[i] & mask) != mask) {
+                table[i] += 1L << offset;
+                return true;
+            }
+            return false;
+        }
+
+        private int indexOf(int hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return (int) h & tableMask;
+        }
+
+        private void reset() {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            size = sampleSize >>> 1;
+        }
+    }
+}
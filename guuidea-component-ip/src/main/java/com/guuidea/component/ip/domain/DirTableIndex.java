@@ -0,0 +1,86 @@
+package com.guuidea.component.ip.domain;
+
+/**
+ * DIR-24-8风格的查表索引，以IP高strideBits位为下标建立首级表：
+ * 整块落在同一IP段内(或整块无数据)时一次读表即得结果，
+ * 块内存在多个IP段时表项记录候选起点，再从该位置在IpRangeIndex中倍增查找。
+ * strideBits越大首级表越大(4 * 2^strideBits字节)，需要二次查找的块越少
+ */
+public class DirTableIndex {
+    public static final int MIN_STRIDE_BITS = 8;
+    public static final int MAX_STRIDE_BITS = 24;
+    private static final int NONE = -1;
+    private static final long MAX_IP = 0xFFFFFFFFL;
+
+    private final int strideBits;
+    private final int shift;
+    private final int[] table;
+    private final IpRangeIndex ipRangeIndex;
+
+    private DirTableIndex(int strideBits, int[] table, IpRangeIndex ipRangeIndex) {
+        this.strideBits = strideBits;
+        this.shift = 32 - strideBits;
+        this.table = table;
+        this.ipRangeIndex = ipRangeIndex;
+    }
+
+    /**
+     * 根据IpRangeIndex构建查表索引
+     * @param ipRangeIndex
+     * @param strideBits 首级表位数，取值8~24
+     * @return
+     */
+    public static DirTableIndex build(IpRangeIndex ipRangeIndex, int strideBits) {
+        if (strideBits < MIN_STRIDE_BITS || strideBits > MAX_STRIDE_BITS) {
+            throw new IllegalArgumentException("首级表位数需在" + MIN_STRIDE_BITS + "~" + MAX_STRIDE_BITS + "之间 [" + strideBits + "].");
+        }
+        int shift = 32 - strideBits;
+        int blocks = 1 << strideBits;
+        int[] table = new int[blocks];
+        int n = ipRangeIndex.size();
+        // i始终指向第一个结束IP不小于当前块起始IP的IP段
+        int i = 0;
+        for (int b = 0; b < blocks; b++) {
+            long blockStart = (long) b << shift;
+            long blockEnd = blockStart + (1L << shift) - 1;
+            while (i < n && ipRangeIndex.getEnd(i) < blockStart) {
+                i++;
+            }
+            if (i == n || ipRangeIndex.getStart(i) > blockEnd) {
+                table[b] = NONE;
+            } else if (ipRangeIndex.getStart(i) <= blockStart && ipRangeIndex.getEnd(i) >= blockEnd) {
+                table[b] = i;
+            } else {
+                table[b] = -i - 2;
+            }
+        }
+        return new DirTableIndex(strideBits, table, ipRangeIndex);
+    }
+
+    public int getStrideBits() {
+        return strideBits;
+    }
+
+    public IpRangeIndex getIpRangeIndex() {
+        return ipRangeIndex;
+    }
+
+    /**
+     * 查找IP所在的IP段下标
+     * @param ip
+     * @return 未命中返回-1
+     */
+    public int indexOf(long ip) {
+        if (ip < 0 || ip > MAX_IP) {
+            return -1;
+        }
+        int entry = table[(int) (ip >>> shift)];
+        if (entry >= 0) {
+            return entry;
+        }
+        if (entry == NONE) {
+            return -1;
+        }
+        return ipRangeIndex.indexOf(ip, -entry - 2);
+    }
+}
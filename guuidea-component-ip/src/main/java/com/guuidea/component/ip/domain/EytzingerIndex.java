@@ -0,0 +1,71 @@
+package com.guuidea.component.ip.domain;
+
+/**
+ * 按Eytzinger(广度优先)顺序排列的起始IP索引，
+ * 下降过程中相邻层的节点在内存中相邻，访问顺序可预测，比普通二分查找的缓存命中率更高，且比较不产生分支
+ */
+public class EytzingerIndex {
+    /**
+     * 下标从1开始，节点k的子节点为2k与2k+1
+     */
+    private final long[] tree;
+    /**
+     * Eytzinger位置对应的IpRangeIndex下标
+     */
+    private final int[] slots;
+    private final int size;
+    private final IpRangeIndex ipRangeIndex;
+
+    private EytzingerIndex(long[] tree, int[] slots, IpRangeIndex ipRangeIndex) {
+        this.tree = tree;
+        this.slots = slots;
+        this.size = tree.length - 1;
+        this.ipRangeIndex = ipRangeIndex;
+    }
+
+    public static EytzingerIndex build(IpRangeIndex ipRangeIndex) {
+        int n = ipRangeIndex.size();
+        long[] tree = new long[n + 1];
+        int[] slots = new int[n + 1];
+        fill(ipRangeIndex, tree, slots, 0, 1);
+        return new EytzingerIndex(tree, slots, ipRangeIndex);
+    }
+
+    /**
+     * 中序遍历填充，返回下一个待放入的有序下标
+     */
+    private static int fill(IpRangeIndex ipRangeIndex, long[] tree, int[] slots, int next, int k) {
+        if (k < tree.length) {
+            next = fill(ipRangeIndex, tree, slots, next, k << 1);
+            tree[k] = ipRangeIndex.getStart(next);
+            slots[k] = next;
+            next++;
+            next = fill(ipRangeIndex, tree, slots, next, (k << 1) + 1);
+        }
+        return next;
+    }
+
+    public IpRangeIndex getIpRangeIndex() {
+        return ipRangeIndex;
+    }
+
+    /**
+     * 查找IP所在的IP段下标
+     * @param ip
+     * @return 未命中返回-1
+     */
+    public int indexOf(long ip) {
+        int k = 1;
+        while (k <= size) {
+            // tree[k] <= ip 时为1，IP均在0~2^32-1之间不会溢出
+            k = (k << 1) + (int) ((tree[k] - ip - 1) >>> 63);
+        }
+        // 去掉末尾连续的右转，得到第一个起始IP大于ip的节点，0表示不存在
+        k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+        int floor = k == 0 ? size - 1 : slots[k] - 1;
+        if (floor < 0 || ipRangeIndex.getEnd(floor) < ip) {
+            return -1;
+        }
+        return floor;
+    }
+}
@@ -9,6 +9,26 @@ public class IPProviderInfo {
     private String dbDriver;
     private String dbUsername;
     private String dbPassword;
+    /**
+     * IP快照文件路径，SNAPSHOT数据源使用
+     */
+    private String snapshotPath;
+    /**
+     * IP文本文件路径，FILE数据源使用
+     */
+    private String filePath;
+    /**
+     * CSV分隔符，默认为逗号
+     */
+    private char fileDelimiter = ',';
+    /**
+     * 定宽格式的各列宽度，设置后按定宽格式解析，否则按CSV解析
+     */
+    private int[] fileColumnWidths;
+    /**
+     * 版本列或表达式(如version、unix_timestamp(updated_at))，取值需随每次修改递增，设置后数据库数据源支持增量加载
+     */
+    private String versionColumn;
 
     public String getDbUrl() {
         return dbUrl;
@@ -41,4 +61,44 @@ public class IPProviderInfo {
     public void setDbPassword(String dbPassword) {
         this.dbPassword = dbPassword;
     }
+
+    public String getSnapshotPath() {
+        return snapshotPath;
+    }
+
+    public void setSnapshotPath(String snapshotPath) {
+        this.snapshotPath = snapshotPath;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public void setFilePath(String filePath) {
+        this.filePath = filePath;
+    }
+
+    public char getFileDelimiter() {
+        return fileDelimiter;
+    }
+
+    public void setFileDelimiter(char fileDelimiter) {
+        this.fileDelimiter = fileDelimiter;
+    }
+
+    public int[] getFileColumnWidths() {
+        return fileColumnWidths;
+    }
+
+    public void setFileColumnWidths(int[] fileColumnWidths) {
+        this.fileColumnWidths = fileColumnWidths;
+    }
+
+    public String getVersionColumn() {
+        return versionColumn;
+    }
+
+    public void setVersionColumn(String versionColumn) {
+        this.versionColumn = versionColumn;
+    }
 }
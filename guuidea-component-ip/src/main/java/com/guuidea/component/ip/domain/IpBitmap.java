@@ -0,0 +1,198 @@
+package com.guuidea.component.ip.domain;
+
+import java.util.Arrays;
+
+/**
+ * IPv4地址集合的压缩位图(Roaring风格)：按IP高16位分为65536个容器，每个容器按内容选择
+ * 空/满/游程(起止数组)/位图(8KB)四种形式之一。判断IP是否属于集合只需一到两次数组访问，不创建对象
+ */
+public class IpBitmap {
+    private static final int EMPTY = 0;
+    private static final int FULL = -1;
+    private static final int CONTAINERS = 1 << 16;
+    /**
+     * 位图容器的long数
+     */
+    private static final int WORDS_PER_BITMAP = 1 << 10;
+    /**
+     * 游程数不少于该值时改用位图容器(每个游程4字节，位图8KB)
+     */
+    private static final int MAX_RUNS = 2048;
+
+    /**
+     * 每个容器的编码：0为空，-1为满，正数n为第n-1个位图容器，小于-1的-n-2为第n个游程容器
+     */
+    private final int[] containers;
+    private final long[] words;
+    private final char[] runStarts;
+    private final char[] runEnds;
+    private final int[] runOffsets;
+    private final long cardinality;
+
+    private IpBitmap(int[] containers, long[] words, char[] runStarts, char[] runEnds, int[] runOffsets, long cardinality) {
+        this.containers = containers;
+        this.words = words;
+        this.runStarts = runStarts;
+        this.runEnds = runEnds;
+        this.runOffsets = runOffsets;
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * IP是否属于集合
+     * @param ip
+     * @return
+     */
+    public boolean contains(long ip) {
+        if ((ip >>> 32) != 0L) {
+            return false;
+        }
+        int container = containers[(int) (ip >>> 16)];
+        if (container == EMPTY) {
+            return false;
+        }
+        if (container == FULL) {
+            return true;
+        }
+        int low = (int) ip & 0xFFFF;
+        if (container > 0) {
+            return (words[((container - 1) << 10) + (low >>> 6)] & (1L << low)) != 0L;
+        }
+        int run = -container - 2;
+        int lowIndex = runOffsets[run];
+        int highIndex = runOffsets[run + 1] - 1;
+        // 最后一个起点不大于low的游程
+        while (lowIndex <= highIndex) {
+            int mid = (lowIndex + highIndex) >>> 1;
+            if (runStarts[mid] <= low) {
+                lowIndex = mid + 1;
+            } else {
+                highIndex = mid - 1;
+            }
+        }
+        return highIndex >= runOffsets[run] && runEnds[highIndex] >= low;
+    }
+
+    /**
+     * 集合中的IP数量
+     * @return
+     */
+    public long getCardinality() {
+        return cardinality;
+    }
+
+    /**
+     * 占用的堆内存估算值(字节)
+     * @return
+     */
+    public long estimateBytes() {
+        return 4L * containers.length + 8L * words.length + 4L * runStarts.length + 4L * runOffsets.length;
+    }
+
+    /**
+     * 按IP升序追加区间构建位图
+     */
+    public static class Builder {
+        private final int[] containers = new int[CONTAINERS];
+        private long[] words = new long[0];
+        private int bitmapCount;
+        private char[] runStarts = new char[64];
+        private char[] runEnds = new char[64];
+        private int runCount;
+        private int[] runOffsets = new int[16];
+        private int runContainerCount;
+        private long cardinality;
+        /**
+         * 当前容器的高16位及其游程，游程暂存在runStarts/runEnds的末尾
+         */
+        private int currentKey = -1;
+        private int currentFrom;
+        private long lastIp = -1L;
+
+        /**
+         * 追加区间[start, end]，区间需按起始IP升序且互不重叠
+         * @param start
+         * @param end
+         * @return
+         */
+        public Builder add(long start, long end) {
+            if (start < 0 || end > 0xFFFFFFFFL || start > end) {
+                throw new IllegalArgumentException("无效的IP段 [" + start + "-" + end + "].");
+            }
+            if (start <= lastIp) {
+                throw new IllegalArgumentException("IP段未按升序追加或存在重叠 [" + start + "-" + end + "].");
+            }
+            lastIp = end;
+            cardinality += end - start + 1;
+            while (start <= end) {
+                int key = (int) (start >>> 16);
+                long containerEnd = Math.min(end, ((long) key << 16) | 0xFFFF);
+                addRun(key, (int) start & 0xFFFF, (int) containerEnd & 0xFFFF);
+                start = containerEnd + 1;
+            }
+            return this;
+        }
+
+        private void addRun(int key, int low, int high) {
+            if (key != currentKey) {
+                finishContainer();
+                currentKey = key;
+                currentFrom = runCount;
+            }
+            if (runCount > currentFrom && runEnds[runCount - 1] + 1 == low) {
+                runEnds[runCount - 1] = (char) high;
+                return;
+            }
+            if (runCount == runStarts.length) {
+                runStarts = Arrays.copyOf(runStarts, runCount * 2);
+                runEnds = Arrays.copyOf(runEnds, runCount * 2);
+            }
+            runStarts[runCount] = (char) low;
+            runEnds[runCount] = (char) high;
+            runCount++;
+        }
+
+        private void finishContainer() {
+            if (currentKey < 0) {
+                return;
+            }
+            int runs = runCount - currentFrom;
+            if (runs == 1 && runStarts[currentFrom] == 0 && runEnds[currentFrom] == 0xFFFF) {
+                containers[currentKey] = FULL;
+                runCount = currentFrom;
+            } else if (runs < MAX_RUNS) {
+                if (runContainerCount + 2 > runOffsets.length) {
+                    runOffsets = Arrays.copyOf(runOffsets, runOffsets.length * 2);
+                }
+                runOffsets[runContainerCount] = currentFrom;
+                runOffsets[runContainerCount + 1] = runCount;
+                containers[currentKey] = -runContainerCount - 2;
+                runContainerCount++;
+            } else {
+                if ((bitmapCount + 1) * WORDS_PER_BITMAP > words.length) {
+                    words = Arrays.copyOf(words, Math.max(words.length * 2, WORDS_PER_BITMAP));
+                }
+                int base = bitmapCount * WORDS_PER_BITMAP;
+                for (int i = currentFrom; i < runCount; i++) {
+                    for (int bit = runStarts[i]; bit <= runEnds[i]; bit++) {
+                        words[base + (bit >>> 6)] |= 1L << bit;
+                    }
+                }
+                bitmapCount++;
+                containers[currentKey] = bitmapCount;
+                runCount = currentFrom;
+            }
+            currentKey = -1;
+        }
+
+        public IpBitmap build() {
+            finishContainer();
+            int[] offsets = Arrays.copyOf(runOffsets, runContainerCount + 1);
+            if (runContainerCount == 0) {
+                offsets[0] = 0;
+            }
+            return new IpBitmap(containers.clone(), Arrays.copyOf(words, bitmapCount * WORDS_PER_BITMAP),
+                    Arrays.copyOf(runStarts, runCount), Arrays.copyOf(runEnds, runCount), offsets, cardinality);
+        }
+    }
+}
@@ -0,0 +1,446 @@
+package com.guuidea.component.ip.domain;
+
+import com.guuidea.component.ip.util.ParallelUtil;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * IP段的基本类型数组索引，按起始IP升序存放，查找时不创建任何对象。
+ * 地区属性经字典编码，每个IP段只保存一个字典下标；IpRange对象在首次获取时才生成并缓存
+ */
+public class IpRangeIndex {
+    private final long[] starts;
+    private final long[] ends;
+    private final int[] regionIndex;
+    private final RegionDictionary regions;
+    /**
+     * 地区到IP段的倒排索引(CSR)：地区r的IP段下标为regionSlots[regionOffsets[r] .. regionOffsets[r + 1])，按起始IP升序
+     */
+    private final int[] regionOffsets;
+    private final int[] regionSlots;
+    /**
+     * 按需生成的IpRange对象
+     */
+    private final AtomicReferenceArray<IpRange> ipRanges;
+    private final IpTableStats stats;
+
+    private IpRangeIndex(long[] starts, long[] ends, int[] regionIndex, RegionDictionary regions, int[] regionOffsets,
+                         int[] regionSlots, IpTableStats stats) {
+        this.starts = starts;
+        this.ends = ends;
+        this.regionIndex = regionIndex;
+        this.regions = regions;
+        this.regionOffsets = regionOffsets;
+        this.regionSlots = regionSlots;
+        this.ipRanges = new AtomicReferenceArray<IpRange>(starts.length);
+        this.stats = stats;
+    }
+
+    /**
+     * 根据IP段列表构建索引，构建时校验并合并相邻的同属性IP段
+     * @param ipRanges
+     * @return
+     */
+    public static IpRangeIndex build(List<IpRange> ipRanges) {
+        int size = ipRanges == null ? 0 : ipRanges.size();
+        Builder builder = new Builder(size);
+        for (int i = 0; i < size; i++) {
+            builder.add(ipRanges.get(i));
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return starts.length;
+    }
+
+    /**
+     * 查找IP所在的IP段下标
+     * @param ip
+     * @return 未命中返回-1
+     */
+    public int indexOf(long ip) {
+        int low = 0;
+        int high = starts.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= ip) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        // high为最后一个起始IP不大于ip的IP段
+        if (high < 0 || ends[high] < ip) {
+            return -1;
+        }
+        return high;
+    }
+
+    /**
+     * 从指定下标开始倍增查找IP所在的IP段下标，用于已知候选位置的场景
+     * @param ip
+     * @param fromIndex 调用方需保证该下标之前的IP段结束IP均小于ip
+     * @return 未命中返回-1
+     */
+    public int indexOf(long ip, int fromIndex) {
+        int floor = floorIndex(ip, fromIndex);
+        if (floor < 0 || ends[floor] < ip) {
+            return -1;
+        }
+        return floor;
+    }
+
+    /**
+     * 从指定下标开始倍增查找最后一个起始IP不大于ip的IP段下标
+     * @param ip
+     * @param fromIndex 调用方需保证该下标之前的IP段起始IP均不大于ip
+     * @return 不存在时返回fromIndex - 1
+     */
+    public int floorIndex(long ip, int fromIndex) {
+        int n = starts.length;
+        if (fromIndex >= n || starts[fromIndex] > ip) {
+            return fromIndex - 1;
+        }
+        int low = fromIndex;
+        int step = 1;
+        while (low + step < n && starts[low + step] <= ip) {
+            low += step;
+            step <<= 1;
+        }
+        int floor = low;
+        int high = Math.min(low + step, n) - 1;
+        low++;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= ip) {
+                floor = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return floor;
+    }
+
+    public long getStart(int index) {
+        return starts[index];
+    }
+
+    public long getEnd(int index) {
+        return ends[index];
+    }
+
+    /**
+     * 获取IP段对象，首次获取时生成，之后复用同一个对象
+     * @param index
+     * @return
+     */
+    public IpRange get(int index) {
+        IpRange ipRange = ipRanges.get(index);
+        if (ipRange == null) {
+            int region = regionIndex[index];
+            ipRange = new IpRange(starts[index], ends[index]);
+            ipRange.setProvinceId(regions.getProvinceId(region));
+            ipRange.setCityId(regions.getCityId(region));
+            ipRange.setCountryId(regions.getCountryId(region));
+            ipRange.setCountryName(regions.getCountryName(region));
+            ipRange.setCountryCode(regions.getCountryCode(region));
+            // 并发时可能重复生成，内容相同，保留任意一个即可
+            ipRanges.lazySet(index, ipRange);
+        }
+        return ipRange;
+    }
+
+    /**
+     * 获取IP段的地区字典下标，配合getRegions()读取属性，无需生成IpRange对象
+     * @param index
+     * @return
+     */
+    public int getRegionIndex(int index) {
+        return regionIndex[index];
+    }
+
+    public RegionDictionary getRegions() {
+        return regions;
+    }
+
+    /**
+     * 获取地区的全部IP段下标
+     * @param region 地区字典下标
+     * @return 按起始IP升序
+     */
+    public int[] getRegionSlots(int region) {
+        return Arrays.copyOfRange(regionSlots, regionOffsets[region], regionOffsets[region + 1]);
+    }
+
+    /**
+     * 地区的IP段数量
+     * @param region 地区字典下标
+     * @return
+     */
+    public int getRegionSlotCount(int region) {
+        return regionOffsets[region + 1] - regionOffsets[region];
+    }
+
+    /**
+     * 构建统计信息
+     * @return
+     */
+    public IpTableStats getStats() {
+        return stats;
+    }
+
+    /**
+     * 以列表形式访问全部IP段，不复制数据
+     * @return
+     */
+    public List<IpRange> asList() {
+        return new IndexList();
+    }
+
+    /**
+     * 支持随机访问，Collections.binarySearch按下标二分
+     */
+    private class IndexList extends AbstractList<IpRange> implements RandomAccess {
+        @Override
+        public IpRange get(int index) {
+            return IpRangeIndex.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return IpRangeIndex.this.size();
+        }
+    }
+
+    /**
+     * 逐条追加IP段构建索引，预先给定容量时加载过程中不产生扩容复制，地区属性在追加时即完成去重。
+     * 构建时并行校验IP段的顺序与重叠(乱序时先排序)，并合并首尾相接且地区属性相同的IP段
+     */
+    public static class Builder extends RangeBuilderBase {
+        /**
+         * 超过该数量时并行校验
+         */
+        private static final int PARALLEL_THRESHOLD = 1 << 16;
+        /**
+         * 每个IP段的估算内存：起止IP、字典下标、倒排索引中的下标及按需生成对象的引用槽位
+         */
+        private static final long BYTES_PER_RANGE = 8 + 8 + 4 + 4 + 4;
+        private long[] starts;
+        private long[] ends;
+        private final RegionDictionary.Builder regions = new RegionDictionary.Builder();
+
+        public Builder(int expectedSize) {
+            int capacity = Math.max(expectedSize, 16);
+            this.starts = new long[capacity];
+            this.ends = new long[capacity];
+            this.regionIndex = new int[capacity];
+        }
+
+        /**
+         * 追加IP段
+         * @param ipRange
+         * @return
+         */
+        public Builder add(IpRange ipRange) {
+            return add(ipRange.getIpStartNum(), ipRange.getIpEndNum(), ipRange.getProvinceId(), ipRange.getCityId(),
+                    ipRange.getCountryId(), ipRange.getCountryName(), ipRange.getCountryCode());
+        }
+
+        /**
+         * 追加IP段，不需要为每一行创建IpRange对象
+         * @param start
+         * @param end
+         * @param provinceId
+         * @param cityId
+         * @param countryId
+         * @param countryName
+         * @param countryCode
+         * @return
+         */
+        public Builder add(long start, long end, int provinceId, int cityId, int countryId, String countryName, String countryCode) {
+            if (size == starts.length) {
+                int capacity = size + (size >> 1);
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                regionIndex = Arrays.copyOf(regionIndex, capacity);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            regionIndex[size] = regions.add(provinceId, cityId, countryId, countryName, countryCode);
+            size++;
+            return this;
+        }
+
+        /**
+         * 是否合并首尾相接且地区属性相同的IP段，默认合并
+         * @param coalesce
+         * @return
+         */
+        public Builder coalesce(boolean coalesce) {
+            this.coalesce = coalesce;
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * 校验、合并并构建索引
+         * @return
+         * @throws IllegalArgumentException IP段起始IP大于结束IP或IP段之间存在重叠
+         */
+        public IpRangeIndex build() {
+            long begin = System.currentTimeMillis();
+            int rowsIn = size;
+            normalize();
+            if (size != starts.length) {
+                starts = Arrays.copyOf(starts, size);
+                ends = Arrays.copyOf(ends, size);
+                regionIndex = Arrays.copyOf(regionIndex, size);
+            }
+            RegionDictionary dictionary = regions.build();
+            // 计数排序构建倒排索引，按下标顺序填充，每个地区内天然有序
+            int[] regionOffsets = new int[dictionary.size() + 1];
+            for (int i = 0; i < size; i++) {
+                regionOffsets[regionIndex[i] + 1]++;
+            }
+            for (int r = 0; r < dictionary.size(); r++) {
+                regionOffsets[r + 1] += regionOffsets[r];
+            }
+            int[] regionSlots = new int[size];
+            int[] fill = Arrays.copyOf(regionOffsets, dictionary.size());
+            for (int i = 0; i < size; i++) {
+                regionSlots[fill[regionIndex[i]]++] = i;
+            }
+            IpTableStats stats = new IpTableStats(rowsIn, size,
+                    size * BYTES_PER_RANGE + 4L * regionOffsets.length + dictionary.estimateBytes(),
+                    System.currentTimeMillis() - begin);
+            return new IpRangeIndex(starts, ends, regionIndex, dictionary, regionOffsets, regionSlots, stats);
+        }
+
+        @Override
+        int[] check() {
+            if (size > PARALLEL_THRESHOLD && ParallelUtil.isParallel()) {
+                return ParallelUtil.getPool().invoke(new CheckTask(starts, ends, 0, size));
+            }
+            return CheckTask.check(starts, ends, 0, size);
+        }
+
+        @Override
+        boolean isInvalid(int i) {
+            return starts[i] > ends[i];
+        }
+
+        @Override
+        int compare(int a, int b) {
+            int result = compareLong(starts[a], starts[b]);
+            return result != 0 ? result : compareLong(ends[a], ends[b]);
+        }
+
+        @Override
+        boolean overlaps(int prev, int next) {
+            return ends[prev] >= starts[next];
+        }
+
+        @Override
+        boolean isNext(int prev, int next) {
+            return ends[prev] + 1 == starts[next];
+        }
+
+        @Override
+        void reorder(Integer[] order) {
+            long[] newStarts = new long[size];
+            long[] newEnds = new long[size];
+            for (int i = 0; i < size; i++) {
+                newStarts[i] = starts[order[i]];
+                newEnds[i] = ends[order[i]];
+            }
+            starts = newStarts;
+            ends = newEnds;
+        }
+
+        @Override
+        void copy(int from, int to) {
+            starts[to] = starts[from];
+            ends[to] = ends[from];
+        }
+
+        @Override
+        void extendEnd(int from, int to) {
+            ends[to] = ends[from];
+        }
+
+        @Override
+        String rangeText(int i) {
+            return starts[i] + "-" + ends[i];
+        }
+
+        private static int compareLong(long a, long b) {
+            return a < b ? -1 : (a == b ? 0 : 1);
+        }
+    }
+
+    /**
+     * 分段校验IP段，返回各类问题最早出现的下标，-1表示不存在
+     */
+    private static class CheckTask extends RecursiveTask<int[]> {
+        private static final long serialVersionUID = 1L;
+        private static final int SPLIT_THRESHOLD = 1 << 15;
+        private final long[] starts;
+        private final long[] ends;
+        private final int from;
+        private final int to;
+
+        CheckTask(long[] starts, long[] ends, int from, int to) {
+            this.starts = starts;
+            this.ends = ends;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                return check(starts, ends, from, to);
+            }
+            int mid = (from + to) >>> 1;
+            CheckTask left = new CheckTask(starts, ends, from, mid);
+            left.fork();
+            int[] right = new CheckTask(starts, ends, mid, to).compute();
+            int[] result = left.join();
+            for (int i = 0; i < result.length; i++) {
+                if (result[i] < 0) {
+                    result[i] = right[i];
+                }
+            }
+            return result;
+        }
+
+        static int[] check(long[] starts, long[] ends, int from, int to) {
+            int[] result = {-1, -1, -1};
+            for (int i = from; i < to; i++) {
+                if (result[RangeBuilderBase.INVALID] < 0 && starts[i] > ends[i]) {
+                    result[RangeBuilderBase.INVALID] = i;
+                }
+                if (i > 0) {
+                    if (starts[i] < starts[i - 1]) {
+                        if (result[RangeBuilderBase.UNSORTED] < 0) {
+                            result[RangeBuilderBase.UNSORTED] = i;
+                        }
+                    } else if (result[RangeBuilderBase.OVERLAP] < 0 && ends[i - 1] >= starts[i]) {
+                        result[RangeBuilderBase.OVERLAP] = i;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+}
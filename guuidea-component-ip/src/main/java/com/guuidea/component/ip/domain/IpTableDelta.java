@@ -0,0 +1,26 @@
+package com.guuidea.component.ip.domain;
+
+/**
+ * 一次增量加载的结果：版本号不小于上次加载版本的IP段(同一版本号的行会被重新读到)，及本次加载到的最大版本号
+ */
+public class IpTableDelta {
+    private final IpRangeIndex ipRangeIndex;
+    private final long version;
+
+    public IpTableDelta(IpRangeIndex ipRangeIndex, long version) {
+        this.ipRangeIndex = ipRangeIndex;
+        this.version = version;
+    }
+
+    /**
+     * 变化的IP段，没有变化时size()为0
+     * @return
+     */
+    public IpRangeIndex getIpRangeIndex() {
+        return ipRangeIndex;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
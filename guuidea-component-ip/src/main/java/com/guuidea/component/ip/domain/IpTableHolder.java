@@ -1,15 +1,183 @@
 package com.guuidea.component.ip.domain;
 
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class IpTableHolder {
     private List<IpRange> ipRangeList;
+    private IpRangeIndex ipRangeIndex;
+    private MappedIpTable mappedIpTable;
+    private DirTableIndex dirTableIndex;
+    private EytzingerIndex eytzingerIndex;
+    private Ipv6RangeIndex ipv6RangeIndex;
+    /**
+     * 增量加载的IP段，查询时优先于全量索引
+     */
+    private IpRangeIndex deltaIndex;
+    /**
+     * 已加载数据的版本号，用于增量加载
+     */
+    private long version;
+    /**
+     * 已注册地区集合在全量索引上构建的位图，增量替换时共享
+     */
+    private ConcurrentMap<RegionSet, IpBitmap> regionBitmaps = new ConcurrentHashMap<RegionSet, IpBitmap>();
 
     public List<IpRange> getIpRangeList() {
         return ipRangeList;
     }
 
+    /**
+     * 设置IP段列表，构建基本类型数组索引，之后的IP段列表为索引的只读视图
+     * @param ipRangeList
+     */
     public void setIpRangeList(List<IpRange> ipRangeList) {
-        this.ipRangeList = ipRangeList;
+        setIpRangeIndex(IpRangeIndex.build(ipRangeList));
+    }
+
+    /**
+     * 根据IP段下标获取IP段，下标来自批量查询的结果
+     * @param index
+     * @return
+     */
+    public IpRange getIpRange(int index) {
+        if (index < 0) {
+            return null;
+        }
+        int baseSize = getBaseSize();
+        if (deltaIndex != null && index >= baseSize) {
+            return deltaIndex.get(index - baseSize);
+        }
+        if (ipRangeIndex != null) {
+            return ipRangeIndex.get(index);
+        }
+        return mappedIpTable == null ? null : mappedIpTable.get(index);
+    }
+
+    /**
+     * IP表构建统计信息，快照数据源返回null
+     * @return
+     */
+    public IpTableStats getStats() {
+        return ipRangeIndex == null ? null : ipRangeIndex.getStats();
+    }
+
+    public IpRangeIndex getIpRangeIndex() {
+        return ipRangeIndex;
+    }
+
+    /**
+     * 直接设置已构建的索引，IP段列表为索引的只读视图，不再单独保存一份
+     * @param ipRangeIndex
+     */
+    public void setIpRangeIndex(IpRangeIndex ipRangeIndex) {
+        this.ipRangeIndex = ipRangeIndex;
+        this.ipRangeList = ipRangeIndex.asList();
+    }
+
+    public MappedIpTable getMappedIpTable() {
+        return mappedIpTable;
+    }
+
+    public void setMappedIpTable(MappedIpTable mappedIpTable) {
+        this.mappedIpTable = mappedIpTable;
+    }
+
+    public DirTableIndex getDirTableIndex() {
+        return dirTableIndex;
+    }
+
+    public void setDirTableIndex(DirTableIndex dirTableIndex) {
+        this.dirTableIndex = dirTableIndex;
+    }
+
+    public EytzingerIndex getEytzingerIndex() {
+        return eytzingerIndex;
+    }
+
+    public void setEytzingerIndex(EytzingerIndex eytzingerIndex) {
+        this.eytzingerIndex = eytzingerIndex;
+    }
+
+    /**
+     * IPv6段索引，数据源未加载IPv6数据时为null
+     * @return
+     */
+    public Ipv6RangeIndex getIpv6RangeIndex() {
+        return ipv6RangeIndex;
+    }
+
+    public void setIpv6RangeIndex(Ipv6RangeIndex ipv6RangeIndex) {
+        this.ipv6RangeIndex = ipv6RangeIndex;
+    }
+
+    public IpRangeIndex getDeltaIndex() {
+        return deltaIndex;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * 地区集合的位图，尚未构建时返回null
+     * @param regionSet
+     * @return
+     */
+    public IpBitmap getRegionBitmap(RegionSet regionSet) {
+        return regionBitmaps.get(regionSet);
+    }
+
+    /**
+     * 构建并缓存地区集合的位图，并发构建时只保留先完成的一个
+     * @param regionSet
+     * @return
+     */
+    public IpBitmap prepareRegionBitmap(RegionSet regionSet) {
+        IpBitmap bitmap = regionBitmaps.get(regionSet);
+        if (bitmap == null) {
+            bitmap = regionSet.buildBitmap(this);
+            IpBitmap existing = regionBitmaps.putIfAbsent(regionSet, bitmap);
+            if (existing != null) {
+                bitmap = existing;
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * 全量索引中的IP段数量，批量查询结果中不小于该值的下标属于增量索引
+     * @return
+     */
+    public int getBaseSize() {
+        if (ipRangeIndex != null) {
+            return ipRangeIndex.size();
+        }
+        return mappedIpTable == null ? 0 : mappedIpTable.size();
+    }
+
+    /**
+     * 复制出一个共享全量索引、使用新增量索引的IP表，原IP表不变
+     * @param deltaIndex
+     * @param version
+     * @return
+     */
+    public IpTableHolder withDelta(IpRangeIndex deltaIndex, long version) {
+        IpTableHolder holder = new IpTableHolder();
+        holder.ipRangeList = ipRangeList;
+        holder.ipRangeIndex = ipRangeIndex;
+        holder.mappedIpTable = mappedIpTable;
+        holder.dirTableIndex = dirTableIndex;
+        holder.eytzingerIndex = eytzingerIndex;
+        holder.ipv6RangeIndex = ipv6RangeIndex;
+        holder.deltaIndex = deltaIndex;
+        holder.version = version;
+        holder.regionBitmaps = regionBitmaps;
+        return holder;
     }
 }
@@ -0,0 +1,52 @@
+package com.guuidea.component.ip.domain;
+
+/**
+ * IP表构建统计信息
+ */
+public class IpTableStats {
+    /**
+     * 读入的原始行数
+     */
+    private final int rowsIn;
+    /**
+     * 合并相邻同属性IP段后的IP段数
+     */
+    private final int rangesOut;
+    /**
+     * 索引占用的堆内存估算值(字节)
+     */
+    private final long bytesUsed;
+    /**
+     * 校验、排序与合并耗时(毫秒)
+     */
+    private final long buildMillis;
+
+    public IpTableStats(int rowsIn, int rangesOut, long bytesUsed, long buildMillis) {
+        this.rowsIn = rowsIn;
+        this.rangesOut = rangesOut;
+        this.bytesUsed = bytesUsed;
+        this.buildMillis = buildMillis;
+    }
+
+    public int getRowsIn() {
+        return rowsIn;
+    }
+
+    public int getRangesOut() {
+        return rangesOut;
+    }
+
+    public long getBytesUsed() {
+        return bytesUsed;
+    }
+
+    public long getBuildMillis() {
+        return buildMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "IpTableStats{rowsIn=" + rowsIn + ", rangesOut=" + rangesOut + ", bytesUsed=" + bytesUsed
+                + ", buildMillis=" + buildMillis + "}";
+    }
+}
@@ -0,0 +1,254 @@
+package com.guuidea.component.ip.domain;
+
+import com.guuidea.component.ip.util.IpUtil;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * IPv6段的基本类型数组索引，128位地址拆分为高低两个64位数值按无符号比较，按起始IP升序存放，查找时不创建任何对象。
+ * 生成的IpRange中ipStartNum/ipEndNum为-1，起止IP以文本形式放在startIp/endIp
+ */
+public class Ipv6RangeIndex {
+    private final long[] startHis;
+    private final long[] startLos;
+    private final long[] endHis;
+    private final long[] endLos;
+    private final int[] regionIndex;
+    private final RegionDictionary regions;
+    private final AtomicReferenceArray<IpRange> ipRanges;
+    private final IpTableStats stats;
+
+    private Ipv6RangeIndex(long[] startHis, long[] startLos, long[] endHis, long[] endLos, int[] regionIndex,
+                           RegionDictionary regions, IpTableStats stats) {
+        this.startHis = startHis;
+        this.startLos = startLos;
+        this.endHis = endHis;
+        this.endLos = endLos;
+        this.regionIndex = regionIndex;
+        this.regions = regions;
+        this.ipRanges = new AtomicReferenceArray<IpRange>(startHis.length);
+        this.stats = stats;
+    }
+
+    public int size() {
+        return startHis.length;
+    }
+
+    /**
+     * 查找IP所在的IP段下标
+     * @param hi 高64位
+     * @param lo 低64位
+     * @return 未命中返回-1
+     */
+    public int indexOf(long hi, long lo) {
+        int low = 0;
+        int high = startHis.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (IpUtil.compareIpv6(startHis[mid], startLos[mid], hi, lo) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (high < 0 || IpUtil.compareIpv6(endHis[high], endLos[high], hi, lo) < 0) {
+            return -1;
+        }
+        return high;
+    }
+
+    public long getStartHi(int index) {
+        return startHis[index];
+    }
+
+    public long getStartLo(int index) {
+        return startLos[index];
+    }
+
+    public long getEndHi(int index) {
+        return endHis[index];
+    }
+
+    public long getEndLo(int index) {
+        return endLos[index];
+    }
+
+    /**
+     * 获取IP段对象，首次获取时生成，之后复用同一个对象
+     * @param index
+     * @return
+     */
+    public IpRange get(int index) {
+        IpRange ipRange = ipRanges.get(index);
+        if (ipRange == null) {
+            int region = regionIndex[index];
+            ipRange = new IpRange(-1L, -1L);
+            ipRange.setStartIp(IpUtil.formatIpv6(startHis[index], startLos[index]));
+            ipRange.setEndIp(IpUtil.formatIpv6(endHis[index], endLos[index]));
+            ipRange.setProvinceId(regions.getProvinceId(region));
+            ipRange.setCityId(regions.getCityId(region));
+            ipRange.setCountryId(regions.getCountryId(region));
+            ipRange.setCountryName(regions.getCountryName(region));
+            ipRange.setCountryCode(regions.getCountryCode(region));
+            ipRanges.lazySet(index, ipRange);
+        }
+        return ipRange;
+    }
+
+    public int getRegionIndex(int index) {
+        return regionIndex[index];
+    }
+
+    public RegionDictionary getRegions() {
+        return regions;
+    }
+
+    public IpTableStats getStats() {
+        return stats;
+    }
+
+    /**
+     * 逐条追加IPv6段构建索引，构建时校验顺序与重叠(乱序时先排序)，并合并首尾相接且地区属性相同的IP段
+     */
+    public static class Builder extends RangeBuilderBase {
+        /**
+         * 每个IP段的估算内存：起止IP各16字节、字典下标及按需生成对象的引用槽位
+         */
+        private static final long BYTES_PER_RANGE = 16 + 16 + 4 + 4;
+        private long[] startHis;
+        private long[] startLos;
+        private long[] endHis;
+        private long[] endLos;
+        private final RegionDictionary.Builder regions = new RegionDictionary.Builder();
+
+        public Builder(int expectedSize) {
+            int capacity = Math.max(expectedSize, 16);
+            this.startHis = new long[capacity];
+            this.startLos = new long[capacity];
+            this.endHis = new long[capacity];
+            this.endLos = new long[capacity];
+            this.regionIndex = new int[capacity];
+        }
+
+        /**
+         * 追加IPv6段
+         * @return
+         */
+        public Builder add(long startHi, long startLo, long endHi, long endLo, int provinceId, int cityId, int countryId,
+                           String countryName, String countryCode) {
+            if (size == startHis.length) {
+                int capacity = size + (size >> 1);
+                startHis = Arrays.copyOf(startHis, capacity);
+                startLos = Arrays.copyOf(startLos, capacity);
+                endHis = Arrays.copyOf(endHis, capacity);
+                endLos = Arrays.copyOf(endLos, capacity);
+                regionIndex = Arrays.copyOf(regionIndex, capacity);
+            }
+            startHis[size] = startHi;
+            startLos[size] = startLo;
+            endHis[size] = endHi;
+            endLos[size] = endLo;
+            regionIndex[size] = regions.add(provinceId, cityId, countryId, countryName, countryCode);
+            size++;
+            return this;
+        }
+
+        /**
+         * 是否合并首尾相接且地区属性相同的IP段，默认合并
+         * @param coalesce
+         * @return
+         */
+        public Builder coalesce(boolean coalesce) {
+            this.coalesce = coalesce;
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * 校验、合并并构建索引
+         * @return
+         * @throws IllegalArgumentException IP段起始IP大于结束IP或IP段之间存在重叠
+         */
+        public Ipv6RangeIndex build() {
+            long begin = System.currentTimeMillis();
+            int rowsIn = size;
+            normalize();
+            if (size != startHis.length) {
+                startHis = Arrays.copyOf(startHis, size);
+                startLos = Arrays.copyOf(startLos, size);
+                endHis = Arrays.copyOf(endHis, size);
+                endLos = Arrays.copyOf(endLos, size);
+                regionIndex = Arrays.copyOf(regionIndex, size);
+            }
+            RegionDictionary dictionary = regions.build();
+            IpTableStats stats = new IpTableStats(rowsIn, size, size * BYTES_PER_RANGE + dictionary.estimateBytes(),
+                    System.currentTimeMillis() - begin);
+            return new Ipv6RangeIndex(startHis, startLos, endHis, endLos, regionIndex, dictionary, stats);
+        }
+
+        @Override
+        boolean isInvalid(int i) {
+            return IpUtil.compareIpv6(startHis[i], startLos[i], endHis[i], endLos[i]) > 0;
+        }
+
+        @Override
+        int compare(int a, int b) {
+            int result = IpUtil.compareIpv6(startHis[a], startLos[a], startHis[b], startLos[b]);
+            return result != 0 ? result : IpUtil.compareIpv6(endHis[a], endLos[a], endHis[b], endLos[b]);
+        }
+
+        @Override
+        boolean overlaps(int prev, int next) {
+            return IpUtil.compareIpv6(endHis[prev], endLos[prev], startHis[next], startLos[next]) >= 0;
+        }
+
+        @Override
+        boolean isNext(int prev, int next) {
+            long lo = endLos[prev] + 1;
+            long hi = lo == 0L ? endHis[prev] + 1 : endHis[prev];
+            return lo == startLos[next] && hi == startHis[next];
+        }
+
+        @Override
+        void reorder(Integer[] order) {
+            long[] newStartHis = new long[size];
+            long[] newStartLos = new long[size];
+            long[] newEndHis = new long[size];
+            long[] newEndLos = new long[size];
+            for (int i = 0; i < size; i++) {
+                int from = order[i];
+                newStartHis[i] = startHis[from];
+                newStartLos[i] = startLos[from];
+                newEndHis[i] = endHis[from];
+                newEndLos[i] = endLos[from];
+            }
+            startHis = newStartHis;
+            startLos = newStartLos;
+            endHis = newEndHis;
+            endLos = newEndLos;
+        }
+
+        @Override
+        void copy(int from, int to) {
+            startHis[to] = startHis[from];
+            startLos[to] = startLos[from];
+            endHis[to] = endHis[from];
+            endLos[to] = endLos[from];
+        }
+
+        @Override
+        void extendEnd(int from, int to) {
+            endHis[to] = endHis[from];
+            endLos[to] = endLos[from];
+        }
+
+        @Override
+        String rangeText(int i) {
+            return IpUtil.formatIpv6(startHis[i], startLos[i]) + "-" + IpUtil.formatIpv6(endHis[i], endLos[i]);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.guuidea.component.ip.domain;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 内存映射的IP快照表，IP段数据保留在堆外并直接在映射区域上查找，
+ * 同一台机器上的多个服务实例可共享操作系统的页缓存
+ */
+public class MappedIpTable {
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int startsOffset;
+    private final int endsOffset;
+    private final int payloadIndexOffset;
+    private final RegionDictionary regions;
+
+    public MappedIpTable(ByteBuffer buffer, int size, int startsOffset, RegionDictionary regions) {
+        this.buffer = buffer;
+        this.size = size;
+        this.startsOffset = startsOffset;
+        this.endsOffset = startsOffset + size * 4;
+        this.payloadIndexOffset = endsOffset + size * 4;
+        this.regions = regions;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 查找IP所在的IP段下标
+     * @param ip
+     * @return 未命中返回-1
+     */
+    public int indexOf(long ip) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (getStart(mid) <= ip) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (high < 0 || getEnd(high) < ip) {
+            return -1;
+        }
+        return high;
+    }
+
+    public long getStart(int index) {
+        return buffer.getInt(startsOffset + (index << 2)) & 0xFFFFFFFFL;
+    }
+
+    public long getEnd(int index) {
+        return buffer.getInt(endsOffset + (index << 2)) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * 根据下标生成IP段对象，地区属性取自快照中去重后的属性表
+     * @param index
+     * @return
+     */
+    public IpRange get(int index) {
+        int region = getRegionIndex(index);
+        IpRange ipRange = new IpRange(getStart(index), getEnd(index));
+        ipRange.setProvinceId(regions.getProvinceId(region));
+        ipRange.setCityId(regions.getCityId(region));
+        ipRange.setCountryId(regions.getCountryId(region));
+        ipRange.setCountryName(regions.getCountryName(region));
+        ipRange.setCountryCode(regions.getCountryCode(region));
+        return ipRange;
+    }
+
+    /**
+     * 获取IP段的地区字典下标，配合getRegions()读取属性，无需生成IpRange对象
+     * @param index
+     * @return
+     */
+    public int getRegionIndex(int index) {
+        return buffer.getInt(payloadIndexOffset + (index << 2));
+    }
+
+    public RegionDictionary getRegions() {
+        return regions;
+    }
+}
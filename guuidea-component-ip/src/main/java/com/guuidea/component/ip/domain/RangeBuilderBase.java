@@ -0,0 +1,131 @@
+package com.guuidea.component.ip.domain;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * IPv4、IPv6段构建器共用的校验、排序与合并流程，子类只负责按下标比较和搬移各自的起止IP列
+ */
+abstract class RangeBuilderBase {
+    static final int INVALID = 0;
+    static final int UNSORTED = 1;
+    static final int OVERLAP = 2;
+
+    int[] regionIndex;
+    int size;
+    boolean coalesce = true;
+
+    /**
+     * 下标i的起始IP是否大于结束IP
+     */
+    abstract boolean isInvalid(int i);
+
+    /**
+     * 按起始IP比较，起始IP相同时按结束IP比较
+     */
+    abstract int compare(int a, int b);
+
+    /**
+     * 已按起始IP排序时，prev的结束IP是否不小于next的起始IP
+     */
+    abstract boolean overlaps(int prev, int next);
+
+    /**
+     * prev的结束IP加1是否等于next的起始IP
+     */
+    abstract boolean isNext(int prev, int next);
+
+    /**
+     * 按order重排起止IP列，order[i]为新下标i对应的原下标
+     */
+    abstract void reorder(Integer[] order);
+
+    /**
+     * 将from的起止IP复制到to
+     */
+    abstract void copy(int from, int to);
+
+    /**
+     * 将to的结束IP设为from的结束IP
+     */
+    abstract void extendEnd(int from, int to);
+
+    abstract String rangeText(int i);
+
+    /**
+     * 校验IP段，返回各类问题最早出现的下标，-1表示不存在
+     */
+    int[] check() {
+        int[] result = {-1, -1, -1};
+        for (int i = 0; i < size; i++) {
+            if (result[INVALID] < 0 && isInvalid(i)) {
+                result[INVALID] = i;
+            }
+            if (i > 0) {
+                if (compare(i - 1, i) > 0) {
+                    if (result[UNSORTED] < 0) {
+                        result[UNSORTED] = i;
+                    }
+                } else if (result[OVERLAP] < 0 && overlaps(i - 1, i)) {
+                    result[OVERLAP] = i;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 校验起止IP，乱序时先排序，再校验重叠并按需合并
+     * @throws IllegalArgumentException IP段起始IP大于结束IP或IP段之间存在重叠
+     */
+    void normalize() {
+        int[] violations = check();
+        if (violations[INVALID] >= 0) {
+            throw new IllegalArgumentException("IP段起始IP大于结束IP [" + rangeText(violations[INVALID]) + "].");
+        }
+        if (violations[UNSORTED] >= 0) {
+            sort();
+            violations = check();
+        }
+        if (violations[OVERLAP] >= 0) {
+            int i = violations[OVERLAP];
+            throw new IllegalArgumentException("IP段存在重叠 [" + rangeText(i - 1) + "] [" + rangeText(i) + "].");
+        }
+        if (coalesce) {
+            coalesceRanges();
+        }
+    }
+
+    private void sort() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return RangeBuilderBase.this.compare(a, b);
+            }
+        });
+        reorder(order);
+        int[] newRegionIndex = new int[size];
+        for (int i = 0; i < size; i++) {
+            newRegionIndex[i] = regionIndex[order[i]];
+        }
+        regionIndex = newRegionIndex;
+    }
+
+    private void coalesceRanges() {
+        int out = 0;
+        for (int i = 0; i < size; i++) {
+            if (out > 0 && regionIndex[out - 1] == regionIndex[i] && isNext(out - 1, i)) {
+                extendEnd(i, out - 1);
+            } else {
+                copy(i, out);
+                regionIndex[out] = regionIndex[i];
+                out++;
+            }
+        }
+        size = out;
+    }
+}
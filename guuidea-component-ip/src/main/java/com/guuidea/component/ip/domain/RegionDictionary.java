@@ -0,0 +1,144 @@
+package com.guuidea.component.ip.domain;
+
+import java.util.Arrays;
+
+/**
+ * 去重后的地区属性字典，IP段只保存一个指向字典的下标，
+ * 国家名称与国家编码经过intern，重复加载的IP表之间共享同一份字符串
+ */
+public class RegionDictionary {
+    private final int[] provinceIds;
+    private final int[] cityIds;
+    private final int[] countryIds;
+    private final String[] countryNames;
+    private final String[] countryCodes;
+
+    private RegionDictionary(int[] provinceIds, int[] cityIds, int[] countryIds, String[] countryNames, String[] countryCodes) {
+        this.provinceIds = provinceIds;
+        this.cityIds = cityIds;
+        this.countryIds = countryIds;
+        this.countryNames = countryNames;
+        this.countryCodes = countryCodes;
+    }
+
+    public int size() {
+        return provinceIds.length;
+    }
+
+    public int getProvinceId(int region) {
+        return provinceIds[region];
+    }
+
+    public int getCityId(int region) {
+        return cityIds[region];
+    }
+
+    public int getCountryId(int region) {
+        return countryIds[region];
+    }
+
+    public String getCountryName(int region) {
+        return countryNames[region];
+    }
+
+    public String getCountryCode(int region) {
+        return countryCodes[region];
+    }
+
+    /**
+     * 估算占用的堆内存(字节)，字符串按intern后共享不计入
+     * @return
+     */
+    public long estimateBytes() {
+        return (long) size() * (4 + 4 + 4 + 4 + 4);
+    }
+
+    /**
+     * 以开放寻址哈希表去重，查找已有属性时不创建对象
+     */
+    public static class Builder {
+        private int[] provinceIds = new int[64];
+        private int[] cityIds = new int[64];
+        private int[] countryIds = new int[64];
+        private String[] countryNames = new String[64];
+        private String[] countryCodes = new String[64];
+        private int size;
+        /**
+         * 存放字典下标 + 1，0表示空位
+         */
+        private int[] table = new int[128];
+
+        /**
+         * 添加地区属性，已存在时返回已有的下标
+         * @return 字典下标
+         */
+        public int add(int provinceId, int cityId, int countryId, String countryName, String countryCode) {
+            int mask = table.length - 1;
+            int slot = hash(provinceId, cityId, countryId, countryName, countryCode) & mask;
+            while (table[slot] != 0) {
+                int region = table[slot] - 1;
+                if (provinceIds[region] == provinceId && cityIds[region] == cityId && countryIds[region] == countryId
+                        && equals(countryNames[region], countryName) && equals(countryCodes[region], countryCode)) {
+                    return region;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (size == provinceIds.length) {
+                int capacity = size << 1;
+                provinceIds = Arrays.copyOf(provinceIds, capacity);
+                cityIds = Arrays.copyOf(cityIds, capacity);
+                countryIds = Arrays.copyOf(countryIds, capacity);
+                countryNames = Arrays.copyOf(countryNames, capacity);
+                countryCodes = Arrays.copyOf(countryCodes, capacity);
+            }
+            int region = size++;
+            provinceIds[region] = provinceId;
+            cityIds[region] = cityId;
+            countryIds[region] = countryId;
+            countryNames[region] = countryName == null ? null : countryName.intern();
+            countryCodes[region] = countryCode == null ? null : countryCode.intern();
+            table[slot] = region + 1;
+            if (size << 1 > table.length) {
+                rehash();
+            }
+            return region;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public RegionDictionary build() {
+            return new RegionDictionary(Arrays.copyOf(provinceIds, size), Arrays.copyOf(cityIds, size),
+                    Arrays.copyOf(countryIds, size), Arrays.copyOf(countryNames, size), Arrays.copyOf(countryCodes, size));
+        }
+
+        private void rehash() {
+            int[] newTable = new int[table.length << 1];
+            int mask = newTable.length - 1;
+            for (int region = 0; region < size; region++) {
+                int slot = hash(provinceIds[region], cityIds[region], countryIds[region], countryNames[region],
+                        countryCodes[region]) & mask;
+                while (newTable[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                newTable[slot] = region + 1;
+            }
+            table = newTable;
+        }
+
+        private static int hash(int provinceId, int cityId, int countryId, String countryName, String countryCode) {
+            int h = provinceId;
+            h = h * 31 + cityId;
+            h = h * 31 + countryId;
+            h = h * 31 + (countryName == null ? 0 : countryName.hashCode());
+            h = h * 31 + (countryCode == null ? 0 : countryCode.hashCode());
+            h *= 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        private static boolean equals(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.guuidea.component.ip.domain;
+
+import java.util.Arrays;
+
+/**
+ * 地区集合，按省份、城市、国家id组合，满足任一条件的地区属于集合。注册到IpLookupService后为每个IP表预先构建压缩位图
+ */
+public class RegionSet {
+    private final int[] provinceIds;
+    private final int[] cityIds;
+    private final int[] countryIds;
+
+    /**
+     * @param provinceIds 省份id，可为null
+     * @param cityIds 城市id，可为null
+     * @param countryIds 国家id，可为null
+     */
+    public RegionSet(int[] provinceIds, int[] cityIds, int[] countryIds) {
+        this.provinceIds = sorted(provinceIds);
+        this.cityIds = sorted(cityIds);
+        this.countryIds = sorted(countryIds);
+    }
+
+    public static RegionSet ofProvinces(int... provinceIds) {
+        return new RegionSet(provinceIds, null, null);
+    }
+
+    public static RegionSet ofCities(int... cityIds) {
+        return new RegionSet(null, cityIds, null);
+    }
+
+    public static RegionSet ofCountries(int... countryIds) {
+        return new RegionSet(null, null, countryIds);
+    }
+
+    private static int[] sorted(int[] ids) {
+        if (ids == null) {
+            return new int[0];
+        }
+        int[] copy = ids.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    /**
+     * 地区字典中的地区是否属于集合
+     * @param regions
+     * @param region
+     * @return
+     */
+    public boolean matches(RegionDictionary regions, int region) {
+        return Arrays.binarySearch(provinceIds, regions.getProvinceId(region)) >= 0
+                || Arrays.binarySearch(cityIds, regions.getCityId(region)) >= 0
+                || Arrays.binarySearch(countryIds, regions.getCountryId(region)) >= 0;
+    }
+
+    /**
+     * 根据IP表的全量索引构建位图，增量IP段不包含在内
+     * @param holder
+     * @return
+     */
+    public IpBitmap buildBitmap(IpTableHolder holder) {
+        IpBitmap.Builder builder = new IpBitmap.Builder();
+        IpRangeIndex index = holder.getIpRangeIndex();
+        if (index != null) {
+            boolean[] matched = matched(index.getRegions());
+            for (int i = 0; i < index.size(); i++) {
+                if (matched[index.getRegionIndex(i)]) {
+                    builder.add(index.getStart(i), index.getEnd(i));
+                }
+            }
+            return builder.build();
+        }
+        MappedIpTable table = holder.getMappedIpTable();
+        if (table != null) {
+            boolean[] matched = matched(table.getRegions());
+            for (int i = 0; i < table.size(); i++) {
+                if (matched[table.getRegionIndex(i)]) {
+                    builder.add(table.getStart(i), table.getEnd(i));
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private boolean[] matched(RegionDictionary regions) {
+        boolean[] matched = new boolean[regions.size()];
+        for (int region = 0; region < matched.length; region++) {
+            matched[region] = matches(regions, region);
+        }
+        return matched;
+    }
+}
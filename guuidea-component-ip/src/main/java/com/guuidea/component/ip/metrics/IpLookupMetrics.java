@@ -0,0 +1,206 @@
+package com.guuidea.component.ip.metrics;
+
+import com.guuidea.component.ip.IpLookupService;
+import com.guuidea.component.ip.cache.HotIpCache;
+import com.guuidea.component.ip.domain.IpTableHolder;
+import com.guuidea.component.ip.domain.IpTableStats;
+import com.guuidea.component.ip.util.StripedCounter;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * IP查询统计：查询次数与未命中次数使用分段计数器累加，耗时按采样比例记录到固定分桶的直方图，
+ * 未采样的查询只有一次计数，可在生产环境常开
+ */
+public class IpLookupMetrics implements IpLookupMetricsMBean {
+    private final IpLookupService service;
+    private final StripedCounter lookups = new StripedCounter();
+    private final StripedCounter misses = new StripedCounter();
+    private final StripedCounter batchLookups = new StripedCounter();
+    private final StripedCounter loads = new StripedCounter();
+    private final StripedCounter loadFailures = new StripedCounter();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private volatile long lastLoadMillis;
+    /**
+     * 耗时采样掩码，每2^n次查询记录一次耗时
+     */
+    private volatile int sampleMask = (1 << 4) - 1;
+
+    public IpLookupMetrics(IpLookupService service) {
+        this.service = service;
+    }
+
+    /**
+     * 设置耗时采样比例
+     * @param sampleShift 每2^sampleShift次查询记录一次耗时，0表示每次都记录
+     */
+    public void setSampleShift(int sampleShift) {
+        if (sampleShift < 0 || sampleShift > 30) {
+            throw new IllegalArgumentException("采样位数需在0~30之间 [" + sampleShift + "].");
+        }
+        this.sampleMask = (1 << sampleShift) - 1;
+    }
+
+    /**
+     * 查询开始时调用
+     * @return 本次查询需要记录耗时时返回开始时间，否则返回0
+     */
+    public long start() {
+        int mask = sampleMask;
+        if (mask != 0 && (ThreadLocalRandom.current().nextInt() & mask) != 0) {
+            return 0L;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * 查询结束时调用
+     * @param startNanos start()的返回值
+     * @param miss 是否未命中
+     */
+    public void recordLookup(long startNanos, boolean miss) {
+        if (startNanos != 0L) {
+            latency.record(System.nanoTime() - startNanos);
+        }
+        lookups.increment();
+        if (miss) {
+            misses.increment();
+        }
+    }
+
+    /**
+     * 记录一次批量查询
+     * @param count IP数量
+     * @param missCount 未命中数量
+     */
+    public void recordBatch(int count, int missCount) {
+        batchLookups.increment();
+        lookups.add(count);
+        misses.add(missCount);
+    }
+
+    /**
+     * 记录一次全量或增量加载
+     * @param millis 耗时
+     * @param success 是否成功
+     */
+    public void recordLoad(long millis, boolean success) {
+        loads.increment();
+        if (success) {
+            lastLoadMillis = millis;
+        } else {
+            loadFailures.increment();
+        }
+    }
+
+    /**
+     * 获取当前统计的快照
+     * @return
+     */
+    public IpLookupMetricsSnapshot snapshot() {
+        IpTableHolder holder = service.getIpTableHolder();
+        IpTableStats stats = holder == null ? null : holder.getStats();
+        HotIpCache cache = service.getHotIpCache();
+        return new IpLookupMetricsSnapshot(lookups.sum(), misses.sum(), batchLookups.sum(), latency.getCounts(),
+                loads.sum(), loadFailures.sum(), lastLoadMillis, stats,
+                holder == null ? 0 : holder.getBaseSize(),
+                holder == null || holder.getDeltaIndex() == null ? 0 : holder.getDeltaIndex().size(),
+                holder == null ? 0L : holder.getVersion(),
+                cache == null ? -1D : cache.getHitRate());
+    }
+
+    @Override
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public double getMissRate() {
+        long total = lookups.sum();
+        return total == 0L ? 0D : (double) misses.sum() / total;
+    }
+
+    @Override
+    public long getBatchLookups() {
+        return batchLookups.sum();
+    }
+
+    @Override
+    public long getLatencyP50Nanos() {
+        return LatencyHistogram.percentile(latency.getCounts(), 0.5D);
+    }
+
+    @Override
+    public long getLatencyP99Nanos() {
+        return LatencyHistogram.percentile(latency.getCounts(), 0.99D);
+    }
+
+    @Override
+    public long getLatencyP999Nanos() {
+        return LatencyHistogram.percentile(latency.getCounts(), 0.999D);
+    }
+
+    @Override
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    @Override
+    public long getLoadFailures() {
+        return loadFailures.sum();
+    }
+
+    @Override
+    public long getLastLoadMillis() {
+        return lastLoadMillis;
+    }
+
+    @Override
+    public int getRangeCount() {
+        IpTableHolder holder = service.getIpTableHolder();
+        return holder == null ? 0 : holder.getBaseSize();
+    }
+
+    @Override
+    public long getTableBytes() {
+        IpTableHolder holder = service.getIpTableHolder();
+        IpTableStats stats = holder == null ? null : holder.getStats();
+        return stats == null ? 0L : stats.getBytesUsed();
+    }
+
+    @Override
+    public long getVersion() {
+        IpTableHolder holder = service.getIpTableHolder();
+        return holder == null ? 0L : holder.getVersion();
+    }
+
+    @Override
+    public int getDeltaRangeCount() {
+        IpTableHolder holder = service.getIpTableHolder();
+        return holder == null || holder.getDeltaIndex() == null ? 0 : holder.getDeltaIndex().size();
+    }
+
+    @Override
+    public double getHotIpCacheHitRate() {
+        HotIpCache cache = service.getHotIpCache();
+        return cache == null ? -1D : cache.getHitRate();
+    }
+
+    /**
+     * 清零查询与加载统计，不影响IP表
+     */
+    @Override
+    public void reset() {
+        lookups.reset();
+        misses.reset();
+        batchLookups.reset();
+        loads.reset();
+        loadFailures.reset();
+        latency.reset();
+    }
+}
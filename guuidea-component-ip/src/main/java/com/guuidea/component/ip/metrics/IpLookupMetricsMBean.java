@@ -0,0 +1,39 @@
+package com.guuidea.component.ip.metrics;
+
+/**
+ * 通过JMX暴露的查询统计
+ */
+public interface IpLookupMetricsMBean {
+
+    long getLookups();
+
+    long getMisses();
+
+    double getMissRate();
+
+    long getBatchLookups();
+
+    long getLatencyP50Nanos();
+
+    long getLatencyP99Nanos();
+
+    long getLatencyP999Nanos();
+
+    long getLoads();
+
+    long getLoadFailures();
+
+    long getLastLoadMillis();
+
+    int getRangeCount();
+
+    long getTableBytes();
+
+    long getVersion();
+
+    int getDeltaRangeCount();
+
+    double getHotIpCacheHitRate();
+
+    void reset();
+}
@@ -0,0 +1,124 @@
+package com.guuidea.component.ip.metrics;
+
+import com.guuidea.component.ip.domain.IpTableStats;
+
+/**
+ * 某一时刻的查询统计，各项分别读取，相互之间不保证严格一致
+ */
+public class IpLookupMetricsSnapshot {
+    private final long lookups;
+    private final long misses;
+    private final long batchLookups;
+    /**
+     * 耗时直方图各桶的样本数，第i个桶的上界为2^i纳秒
+     */
+    private final long[] latencyCounts;
+    private final long loads;
+    private final long loadFailures;
+    private final long lastLoadMillis;
+    /**
+     * 当前IP表的构建统计，快照数据源为null
+     */
+    private final IpTableStats tableStats;
+    private final int rangeCount;
+    private final int deltaRangeCount;
+    private final long version;
+    /**
+     * 热点IP缓存命中率，未开启时为-1
+     */
+    private final double hotIpCacheHitRate;
+
+    public IpLookupMetricsSnapshot(long lookups, long misses, long batchLookups, long[] latencyCounts, long loads,
+                                   long loadFailures, long lastLoadMillis, IpTableStats tableStats, int rangeCount,
+                                   int deltaRangeCount, long version, double hotIpCacheHitRate) {
+        this.lookups = lookups;
+        this.misses = misses;
+        this.batchLookups = batchLookups;
+        this.latencyCounts = latencyCounts;
+        this.loads = loads;
+        this.loadFailures = loadFailures;
+        this.lastLoadMillis = lastLoadMillis;
+        this.tableStats = tableStats;
+        this.rangeCount = rangeCount;
+        this.deltaRangeCount = deltaRangeCount;
+        this.version = version;
+        this.hotIpCacheHitRate = hotIpCacheHitRate;
+    }
+
+    public long getLookups() {
+        return lookups;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getBatchLookups() {
+        return batchLookups;
+    }
+
+    public long[] getLatencyCounts() {
+        return latencyCounts.clone();
+    }
+
+    /**
+     * 耗时分位数的估算值
+     * @param percentile 0~1
+     * @return 纳秒
+     */
+    public long getLatencyPercentileNanos(double percentile) {
+        return LatencyHistogram.percentile(latencyCounts, percentile);
+    }
+
+    public long getLoads() {
+        return loads;
+    }
+
+    public long getLoadFailures() {
+        return loadFailures;
+    }
+
+    public long getLastLoadMillis() {
+        return lastLoadMillis;
+    }
+
+    public IpTableStats getTableStats() {
+        return tableStats;
+    }
+
+    public int getRangeCount() {
+        return rangeCount;
+    }
+
+    public int getDeltaRangeCount() {
+        return deltaRangeCount;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public double getHotIpCacheHitRate() {
+        return hotIpCacheHitRate;
+    }
+
+    @Override
+    public String toString() {
+        return "IpLookupMetricsSnapshot{" +
+                "lookups=" + lookups +
+                ", misses=" + misses +
+                ", batchLookups=" + batchLookups +
+                ", p50Nanos=" + getLatencyPercentileNanos(0.5D) +
+                ", p99Nanos=" + getLatencyPercentileNanos(0.99D) +
+                ", p999Nanos=" + getLatencyPercentileNanos(0.999D) +
+                ", loads=" + loads +
+                ", loadFailures=" + loadFailures +
+                ", lastLoadMillis=" + lastLoadMillis +
+                ", rangeCount=" + rangeCount +
+                ", deltaRangeCount=" + deltaRangeCount +
+                ", version=" + version +
+                ", hotIpCacheHitRate=" + hotIpCacheHitRate +
+                ", tableStats=" + tableStats +
+                '}';
+    }
+}
@@ -0,0 +1,71 @@
+package com.guuidea.component.ip.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 固定分桶的耗时直方图，第i个桶统计[2^(i-1), 2^i)纳秒的样本，记录时只有一次原子加，不创建对象
+ */
+public class LatencyHistogram {
+    /**
+     * 最后一个桶统计不小于2^(BUCKETS-2)纳秒(约0.5秒)的样本
+     */
+    public static final int BUCKETS = 31;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    public void record(long nanos) {
+        int bucket = 64 - Long.numberOfLeadingZeros(Math.max(nanos, 0L));
+        buckets.getAndIncrement(Math.min(bucket, BUCKETS - 1));
+    }
+
+    /**
+     * 各桶样本数的副本
+     * @return
+     */
+    public long[] getCounts() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * 根据分桶结果估算分位数，返回所在桶的上界
+     * @param counts getCounts()的结果
+     * @param percentile 0~1
+     * @return 纳秒，没有样本时返回0
+     */
+    public static long percentile(long[] counts, double percentile) {
+        long total = 0L;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0L) {
+            return 0L;
+        }
+        long rank = (long) Math.ceil(total * percentile);
+        long seen = 0L;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(rank, 1L)) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(counts.length - 1);
+    }
+
+    /**
+     * 第i个桶的上界(纳秒)
+     * @param bucket
+     * @return
+     */
+    public static long upperBound(int bucket) {
+        return 1L << bucket;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0L);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.guuidea.component.ip.strategy;
 
 import com.guuidea.component.ip.domain.IPProviderInfo;
+import com.guuidea.component.ip.domain.IpTableHolder;
 
 import java.sql.SQLException;
 import java.util.List;
@@ -10,5 +11,12 @@ import java.util.List;
  * @Date: 2020/4/14
  */
 public interface DataStrategy {
-    void load(List<IPProviderInfo> ipProviderInfos) throws SQLException, ClassNotFoundException;
+    /**
+     * 加载IP数据并构建完整的IP表，加载过程不影响当前正在使用的IP表
+     * @param ipProviderInfos
+     * @return
+     * @throws SQLException
+     * @throws ClassNotFoundException
+     */
+    IpTableHolder load(List<IPProviderInfo> ipProviderInfos) throws SQLException, ClassNotFoundException;
 }
@@ -0,0 +1,23 @@
+package com.guuidea.component.ip.strategy;
+
+import com.guuidea.component.ip.domain.IPProviderInfo;
+import com.guuidea.component.ip.domain.IpTableDelta;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * 支持增量加载的数据源，全量加载时需在IpTableHolder中记录加载时的版本号。
+ * 增量IP段整段覆盖全量索引中的对应区间，删除的行及IP段范围的缩小无法通过增量体现，需全量重新加载
+ */
+public interface DeltaDataStrategy extends DataStrategy {
+    /**
+     * 加载版本号不小于sinceVersion的IP段，同一版本号内先后修改的行不会遗漏，重复加载的行覆盖结果不变
+     * @param ipProviderInfos
+     * @param sinceVersion 上次加载到的版本号
+     * @return
+     * @throws SQLException
+     * @throws ClassNotFoundException
+     */
+    IpTableDelta loadDelta(List<IPProviderInfo> ipProviderInfos, long sinceVersion) throws SQLException, ClassNotFoundException;
+}
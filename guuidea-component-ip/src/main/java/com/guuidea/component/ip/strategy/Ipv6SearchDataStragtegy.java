@@ -0,0 +1,24 @@
+package com.guuidea.component.ip.strategy;
+
+import com.guuidea.component.ip.domain.IpRange;
+import com.guuidea.component.ip.domain.IpTableHolder;
+
+/**
+ * IPv6检索方式，地址以高低两个64位数值传入
+ */
+public interface Ipv6SearchDataStragtegy {
+    /**
+     * 在IP表发布前构建该检索方式所需的额外索引，不需要额外索引的检索方式留空即可
+     * @param ipTableHolder
+     */
+    void prepare(IpTableHolder ipTableHolder);
+
+    /**
+     * 在指定的IP表中查询IPv6地址所在的IP段
+     * @param ipTableHolder
+     * @param hi 高64位
+     * @param lo 低64位
+     * @return 未命中返回null
+     */
+    IpRange search(IpTableHolder ipTableHolder, long hi, long lo);
+}
@@ -1,11 +1,25 @@
 package com.guuidea.component.ip.strategy;
 
 import com.guuidea.component.ip.domain.IpRange;
+import com.guuidea.component.ip.domain.IpTableHolder;
 
 /**
  * @Author: ll
  * @Date: 2020/4/14
  */
 public interface SearchDataStragtegy {
-    IpRange search(long ip);
+    /**
+     * 在IP表发布前构建该检索方式所需的额外索引，不需要额外索引的检索方式只校验所需数据是否存在
+     * @param ipTableHolder
+     * @throws IllegalStateException 数据源未提供该检索方式所需的数据，如SNAPSHOT数据源只有映射表
+     */
+    void prepare(IpTableHolder ipTableHolder);
+
+    /**
+     * 在指定的IP表中查询IP所在的IP段
+     * @param ipTableHolder
+     * @param ip
+     * @return 未命中返回null
+     */
+    IpRange search(IpTableHolder ipTableHolder, long ip);
 }
@@ -0,0 +1,32 @@
+package com.guuidea.component.ip.strategy.impl;
+
+import com.guuidea.component.ip.domain.IpRange;
+import com.guuidea.component.ip.domain.IpTableHolder;
+import com.guuidea.component.ip.domain.IpRangeIndex;
+import com.guuidea.component.ip.strategy.SearchDataStragtegy;
+
+/**
+ * @desc: 单数据源，基于基本类型数组的二分查找，查找过程不创建对象
+ */
+public class ArraySearch implements SearchDataStragtegy {
+
+    @Override
+    public void prepare(IpTableHolder ipTableHolder) {
+        if (ipTableHolder.getIpRangeIndex() == null) {
+            throw new IllegalStateException("ARRAY检索方式需要基本类型数组索引，SNAPSHOT数据源请使用MAPPED检索方式");
+        }
+    }
+
+    @Override
+    public IpRange search(IpTableHolder ipTableHolder, long ip) {
+        IpRangeIndex index = ipTableHolder.getIpRangeIndex();
+        if (index == null) {
+            return null;
+        }
+        int slot = index.indexOf(ip);
+        if (slot < 0) {
+            return null;
+        }
+        return index.get(slot);
+    }
+}
@@ -1,8 +1,8 @@
 package com.guuidea.component.ip.strategy.impl;
 
 import com.guuidea.component.ip.domain.IpRange;
+import com.guuidea.component.ip.domain.IpTableHolder;
 import com.guuidea.component.ip.strategy.SearchDataStragtegy;
-import com.guuidea.component.ip.IPProvider;
 
 import java.util.Collections;
 import java.util.List;
@@ -15,8 +15,15 @@ import java.util.List;
 public class BinarySearch implements SearchDataStragtegy {
 
     @Override
-    public IpRange search(long ip) {
-        List<IpRange> ipList = IPProvider.ipRangeList.get(0).getIpRangeList();
+    public void prepare(IpTableHolder ipTableHolder) {
+        if (ipTableHolder.getIpRangeList() == null) {
+            throw new IllegalStateException("BINARY检索方式需要IP段列表，SNAPSHOT数据源请使用MAPPED检索方式");
+        }
+    }
+
+    @Override
+    public IpRange search(IpTableHolder ipTableHolder, long ip) {
+        List<IpRange> ipList = ipTableHolder.getIpRangeList();
         if ((ipList == null) || (ipList.isEmpty())) {
             return null;
         }
@@ -0,0 +1,49 @@
+package com.guuidea.component.ip.strategy.impl;
+
+import com.guuidea.component.ip.domain.DirTableIndex;
+import com.guuidea.component.ip.domain.IpRange;
+import com.guuidea.component.ip.domain.IpRangeIndex;
+import com.guuidea.component.ip.domain.IpTableHolder;
+import com.guuidea.component.ip.strategy.SearchDataStragtegy;
+
+/**
+ * @desc: 单数据源，DIR-24-8风格查表，多数IP只需一到两次内存读取
+ */
+public class DirTableSearch implements SearchDataStragtegy {
+    private final int strideBits;
+
+    /**
+     * @param strideBits 首级表位数，取值8~24，越大查找越快、内存占用越高(4 * 2^strideBits字节)
+     */
+    public DirTableSearch(int strideBits) {
+        if (strideBits < DirTableIndex.MIN_STRIDE_BITS || strideBits > DirTableIndex.MAX_STRIDE_BITS) {
+            throw new IllegalArgumentException("首级表位数需在" + DirTableIndex.MIN_STRIDE_BITS + "~" + DirTableIndex.MAX_STRIDE_BITS + "之间 [" + strideBits + "].");
+        }
+        this.strideBits = strideBits;
+    }
+
+    @Override
+    public void prepare(IpTableHolder ipTableHolder) {
+        IpRangeIndex index = ipTableHolder.getIpRangeIndex();
+        if (index == null) {
+            throw new IllegalStateException("DIR检索方式需要基本类型数组索引，不支持SNAPSHOT数据源");
+        }
+        DirTableIndex dirTableIndex = ipTableHolder.getDirTableIndex();
+        if (dirTableIndex == null || dirTableIndex.getStrideBits() != strideBits) {
+            ipTableHolder.setDirTableIndex(DirTableIndex.build(index, strideBits));
+        }
+    }
+
+    @Override
+    public IpRange search(IpTableHolder ipTableHolder, long ip) {
+        DirTableIndex dirTableIndex = ipTableHolder.getDirTableIndex();
+        if (dirTableIndex == null) {
+            return null;
+        }
+        int slot = dirTableIndex.indexOf(ip);
+        if (slot < 0) {
+            return null;
+        }
+        return dirTableIndex.getIpRangeIndex().get(slot);
+    }
+}
@@ -0,0 +1,37 @@
+package com.guuidea.component.ip.strategy.impl;
+
+import com.guuidea.component.ip.domain.EytzingerIndex;
+import com.guuidea.component.ip.domain.IpRange;
+import com.guuidea.component.ip.domain.IpRangeIndex;
+import com.guuidea.component.ip.domain.IpTableHolder;
+import com.guuidea.component.ip.strategy.SearchDataStragtegy;
+
+/**
+ * @desc: 单数据源，Eytzinger布局的无分支查找，内存占用与有序数组相当，缓存未命中与分支预测失败更少
+ */
+public class EytzingerSearch implements SearchDataStragtegy {
+
+    @Override
+    public void prepare(IpTableHolder ipTableHolder) {
+        IpRangeIndex index = ipTableHolder.getIpRangeIndex();
+        if (index == null) {
+            throw new IllegalStateException("EYTZINGER检索方式需要基本类型数组索引，不支持SNAPSHOT数据源");
+        }
+        if (ipTableHolder.getEytzingerIndex() == null) {
+            ipTableHolder.setEytzingerIndex(EytzingerIndex.build(index));
+        }
+    }
+
+    @Override
+    public IpRange search(IpTableHolder ipTableHolder, long ip) {
+        EytzingerIndex eytzingerIndex = ipTableHolder.getEytzingerIndex();
+        if (eytzingerIndex == null) {
+            return null;
+        }
+        int slot = eytzingerIndex.indexOf(ip);
+        if (slot < 0) {
+            return null;
+        }
+        return eytzingerIndex.getIpRangeIndex().get(slot);
+    }
+}
@@ -0,0 +1,34 @@
+package com.guuidea.component.ip.strategy.impl;
+
+import com.guuidea.component.ip.domain.IPProviderInfo;
+import com.guuidea.component.ip.domain.IpTableHolder;
+import com.guuidea.component.ip.strategy.DataStrategy;
+import com.guuidea.component.ip.util.IpFileParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * @desc: 从CSV或定宽格式的文本文件加载，文件按块内存映射后多线程并行解析，不依赖数据库
+ */
+public class FileDataStrategy implements DataStrategy {
+
+    @Override
+    public IpTableHolder load(List<IPProviderInfo> ipProviderInfos) {
+        IPProviderInfo info = ipProviderInfos.get(0);
+        String filePath = info.getFilePath();
+        if (filePath == null || filePath.length() == 0) {
+            throw new IllegalArgumentException("未配置IP文件路径");
+        }
+        IpFileParser parser = info.getFileColumnWidths() != null ? new IpFileParser(info.getFileColumnWidths())
+                : new IpFileParser(info.getFileDelimiter());
+        IpTableHolder ipTableHolder = new IpTableHolder();
+        try {
+            ipTableHolder.setIpRangeIndex(parser.parse(new File(filePath)));
+        } catch (IOException e) {
+            throw new IllegalStateException("加载IP文件失败 [" + filePath + "].", e);
+        }
+        return ipTableHolder;
+    }
+}
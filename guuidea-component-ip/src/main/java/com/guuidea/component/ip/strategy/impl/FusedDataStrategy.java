@@ -0,0 +1,55 @@
+package com.guuidea.component.ip.strategy.impl;
+
+import com.guuidea.component.ip.domain.IPProviderInfo;
+import com.guuidea.component.ip.domain.IpRangeIndex;
+import com.guuidea.component.ip.domain.IpTableHolder;
+import com.guuidea.component.ip.strategy.DataStrategy;
+import com.guuidea.component.ip.util.IpRangeMergeUtil;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @desc: 多数据源融合，依次加载各数据源后按优先级合并为一个互不重叠的IP表，一次查询即可同时得到省份/城市与国家。
+ * 同一段IP的每个属性取优先级最高且不为-1/null的数据源的值
+ */
+public class FusedDataStrategy implements DataStrategy {
+    private final DataStrategy[] dataStrategies;
+
+    /**
+     * @param dataStrategies 按优先级从高到低排列，不支持快照数据源
+     */
+    public FusedDataStrategy(DataStrategy... dataStrategies) {
+        if (dataStrategies.length == 0) {
+            throw new IllegalArgumentException("至少需要一个数据源");
+        }
+        this.dataStrategies = dataStrategies.clone();
+    }
+
+    /**
+     * 第i个数据源使用第i个IPProviderInfo，数量不足时使用最后一个
+     * @param ipProviderInfos
+     * @return
+     * @throws SQLException
+     * @throws ClassNotFoundException
+     */
+    @Override
+    public IpTableHolder load(List<IPProviderInfo> ipProviderInfos) throws SQLException, ClassNotFoundException {
+        IpRangeIndex[] sources = new IpRangeIndex[dataStrategies.length];
+        IpTableHolder ipTableHolder = new IpTableHolder();
+        for (int i = 0; i < dataStrategies.length; i++) {
+            IPProviderInfo info = ipProviderInfos.get(Math.min(i, ipProviderInfos.size() - 1));
+            IpTableHolder source = dataStrategies[i].load(Collections.singletonList(info));
+            if (source.getIpRangeIndex() == null) {
+                throw new IllegalArgumentException("融合数据源不支持快照数据源");
+            }
+            sources[i] = source.getIpRangeIndex();
+            if (ipTableHolder.getIpv6RangeIndex() == null) {
+                ipTableHolder.setIpv6RangeIndex(source.getIpv6RangeIndex());
+            }
+        }
+        ipTableHolder.setIpRangeIndex(sources.length == 1 ? sources[0] : IpRangeMergeUtil.merge(sources, true));
+        return ipTableHolder;
+    }
+}
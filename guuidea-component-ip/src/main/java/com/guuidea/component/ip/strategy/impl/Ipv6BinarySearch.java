@@ -0,0 +1,29 @@
+package com.guuidea.component.ip.strategy.impl;
+
+import com.guuidea.component.ip.domain.IpRange;
+import com.guuidea.component.ip.domain.IpTableHolder;
+import com.guuidea.component.ip.domain.Ipv6RangeIndex;
+import com.guuidea.component.ip.strategy.Ipv6SearchDataStragtegy;
+
+/**
+ * @desc: IPv6段按128位无符号数值二分查找，查找过程不创建对象
+ */
+public class Ipv6BinarySearch implements Ipv6SearchDataStragtegy {
+
+    @Override
+    public void prepare(IpTableHolder ipTableHolder) {
+    }
+
+    @Override
+    public IpRange search(IpTableHolder ipTableHolder, long hi, long lo) {
+        Ipv6RangeIndex index = ipTableHolder.getIpv6RangeIndex();
+        if (index == null) {
+            return null;
+        }
+        int slot = index.indexOf(hi, lo);
+        if (slot < 0) {
+            return null;
+        }
+        return index.get(slot);
+    }
+}
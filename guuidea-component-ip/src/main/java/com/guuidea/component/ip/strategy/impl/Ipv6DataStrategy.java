@@ -0,0 +1,56 @@
+package com.guuidea.component.ip.strategy.impl;
+
+import com.guuidea.component.ip.domain.IPProviderInfo;
+import com.guuidea.component.ip.domain.IpTableDelta;
+import com.guuidea.component.ip.domain.IpTableHolder;
+import com.guuidea.component.ip.strategy.DataStrategy;
+import com.guuidea.component.ip.strategy.DeltaDataStrategy;
+import com.guuidea.component.ip.util.DBUtil;
+import com.guuidea.component.ip.util.IpRangeJdbcLoader;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * @desc: 先由IPv4数据源加载IPv4表，再从tbl_ipv6_info加载IPv6段放入同一个IP表，两者随IP表一起发布和替换。
+ * tbl_ipv6_info的ip_start、ip_end为IPv6文本。
+ * 增量加载只作用于IPv4表，IPv6段保持不变，IPv6数据的修改需全量重新加载
+ */
+public class Ipv6DataStrategy implements DeltaDataStrategy {
+    private final DataStrategy ipv4DataStrategy;
+    private final String selectSql;
+
+    /**
+     * @param ipv4DataStrategy IPv4数据源
+     * @param selectSql IPv6查询SQL，列依次为起始IP、结束IP、省份ID、城市ID、国家ID
+     */
+    public Ipv6DataStrategy(DataStrategy ipv4DataStrategy, String selectSql) {
+        this.ipv4DataStrategy = ipv4DataStrategy;
+        this.selectSql = selectSql;
+    }
+
+    @Override
+    public IpTableHolder load(List<IPProviderInfo> ipProviderInfos) throws SQLException, ClassNotFoundException {
+        IpTableHolder ipTableHolder = ipv4DataStrategy.load(ipProviderInfos);
+        Connection conn = DBUtil.getConnection(ipProviderInfos.get(0));
+        try {
+            ipTableHolder.setIpv6RangeIndex(IpRangeJdbcLoader.loadIpv6(conn, "select count(*) from tbl_ipv6_info", selectSql));
+        } finally {
+            DBUtil.closeConnection(conn, null, null);
+        }
+        return ipTableHolder;
+    }
+
+    /**
+     * 由IPv4数据源增量加载IPv4段
+     * @throws UnsupportedOperationException IPv4数据源不支持增量加载
+     */
+    @Override
+    public IpTableDelta loadDelta(List<IPProviderInfo> ipProviderInfos, long sinceVersion) throws SQLException, ClassNotFoundException {
+        if (!(ipv4DataStrategy instanceof DeltaDataStrategy)) {
+            throw new UnsupportedOperationException("数据源不支持增量加载");
+        }
+        return ((DeltaDataStrategy) ipv4DataStrategy).loadDelta(ipProviderInfos, sinceVersion);
+    }
+}
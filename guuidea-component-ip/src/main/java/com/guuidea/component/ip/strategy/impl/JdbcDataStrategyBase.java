@@ -0,0 +1,68 @@
+package com.guuidea.component.ip.strategy.impl;
+
+import com.guuidea.component.ip.domain.IPProviderInfo;
+import com.guuidea.component.ip.domain.IpTableDelta;
+import com.guuidea.component.ip.domain.IpTableHolder;
+import com.guuidea.component.ip.strategy.DeltaDataStrategy;
+import com.guuidea.component.ip.util.DBUtil;
+import com.guuidea.component.ip.util.IpRangeJdbcLoader;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * @desc: 从tbl_ip_info全量或增量加载IP段，子类只指定查询的列
+ */
+abstract class JdbcDataStrategyBase implements DeltaDataStrategy {
+    private final String columns;
+
+    /**
+     * @param columns 查询列，依次为起始IP、结束IP、省份ID、城市ID、国家ID
+     */
+    JdbcDataStrategyBase(String columns) {
+        this.columns = columns;
+    }
+
+    @Override
+    public IpTableHolder load(List<IPProviderInfo> ipProviderInfos) throws SQLException, ClassNotFoundException {
+        IPProviderInfo info = ipProviderInfos.get(0);
+        Connection conn = DBUtil.getConnection(info);
+        String countSql = "select count(*) from tbl_ip_info";
+        String selectSql = "select " + columns + " from tbl_ip_info order by ip_start_num";
+        IpTableHolder ipTableHolder = new IpTableHolder();
+        try {
+            if (hasVersionColumn(info)) {
+                ipTableHolder.setVersion(IpRangeJdbcLoader.loadVersion(conn,
+                        "select ifnull(max(" + info.getVersionColumn() + "),0) from tbl_ip_info"));
+            }
+            ipTableHolder.setIpRangeIndex(IpRangeJdbcLoader.load(conn, countSql, selectSql));
+        } finally {
+            DBUtil.closeConnection(conn, null, null);
+        }
+        return ipTableHolder;
+    }
+
+    /**
+     * 加载版本号不小于sinceVersion的IP段。与上次同一版本号(如同一秒)修改的行也会被读到，重复应用的结果不变
+     */
+    @Override
+    public IpTableDelta loadDelta(List<IPProviderInfo> ipProviderInfos, long sinceVersion) throws SQLException, ClassNotFoundException {
+        IPProviderInfo info = ipProviderInfos.get(0);
+        if (!hasVersionColumn(info)) {
+            throw new IllegalArgumentException("未配置版本列，无法增量加载");
+        }
+        Connection conn = DBUtil.getConnection(info);
+        String versionColumn = info.getVersionColumn();
+        String deltaSql = "select " + columns + "," + versionColumn + " from tbl_ip_info where " + versionColumn + " >= ?";
+        try {
+            return IpRangeJdbcLoader.loadDelta(conn, deltaSql, sinceVersion);
+        } finally {
+            DBUtil.closeConnection(conn, null, null);
+        }
+    }
+
+    private static boolean hasVersionColumn(IPProviderInfo info) {
+        return info.getVersionColumn() != null && info.getVersionColumn().length() > 0;
+    }
+}
@@ -0,0 +1,32 @@
+package com.guuidea.component.ip.strategy.impl;
+
+import com.guuidea.component.ip.domain.IpRange;
+import com.guuidea.component.ip.domain.IpTableHolder;
+import com.guuidea.component.ip.domain.MappedIpTable;
+import com.guuidea.component.ip.strategy.SearchDataStragtegy;
+
+/**
+ * @desc: 内存映射快照文件，直接在映射区域上二分查找，需配合SNAPSHOT数据源使用
+ */
+public class MappedSearch implements SearchDataStragtegy {
+
+    @Override
+    public void prepare(IpTableHolder ipTableHolder) {
+        if (ipTableHolder.getMappedIpTable() == null) {
+            throw new IllegalStateException("MAPPED检索方式需配合SNAPSHOT数据源使用");
+        }
+    }
+
+    @Override
+    public IpRange search(IpTableHolder ipTableHolder, long ip) {
+        MappedIpTable table = ipTableHolder.getMappedIpTable();
+        if (table == null) {
+            return null;
+        }
+        int slot = table.indexOf(ip);
+        if (slot < 0) {
+            return null;
+        }
+        return table.get(slot);
+    }
+}
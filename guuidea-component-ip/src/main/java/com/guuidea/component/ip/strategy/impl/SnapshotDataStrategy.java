@@ -0,0 +1,31 @@
+package com.guuidea.component.ip.strategy.impl;
+
+import com.guuidea.component.ip.domain.IPProviderInfo;
+import com.guuidea.component.ip.domain.IpTableHolder;
+import com.guuidea.component.ip.strategy.DataStrategy;
+import com.guuidea.component.ip.util.IpSnapshotUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * @desc: 从IpSnapshotUtil导出的快照文件加载，文件通过内存映射读取，不依赖数据库
+ */
+public class SnapshotDataStrategy implements DataStrategy {
+
+    @Override
+    public IpTableHolder load(List<IPProviderInfo> ipProviderInfos) {
+        String snapshotPath = ipProviderInfos.get(0).getSnapshotPath();
+        if (snapshotPath == null || snapshotPath.length() == 0) {
+            throw new IllegalArgumentException("未配置IP快照文件路径");
+        }
+        IpTableHolder ipTableHolder = new IpTableHolder();
+        try {
+            ipTableHolder.setMappedIpTable(IpSnapshotUtil.map(new File(snapshotPath)));
+        } catch (IOException e) {
+            throw new IllegalStateException("加载IP快照文件失败 [" + snapshotPath + "].", e);
+        }
+        return ipTableHolder;
+    }
+}
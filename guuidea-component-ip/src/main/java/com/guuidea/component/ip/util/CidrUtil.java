@@ -0,0 +1,87 @@
+package com.guuidea.component.ip.util;
+
+import java.util.List;
+
+/**
+ * IPv4 CIDR的解析与最小覆盖
+ */
+public class CidrUtil {
+
+	private static final long MAX_IP = 0xFFFFFFFFL;
+
+	/**
+	 * 解析CIDR，如10.0.0.0/8，不带前缀长度时视为/32
+	 * @param cidr
+	 * @param out 长度不小于2，解析成功时out[0]为起始IP，out[1]为结束IP
+	 * @return 是否有效，主机位不为0时按网络地址处理
+	 */
+	public static boolean parse(CharSequence cidr, long[] out) {
+		if (cidr == null) {
+			return false;
+		}
+		int slash = -1;
+		for (int i = 0; i < cidr.length(); i++) {
+			if (cidr.charAt(i) == '/') {
+				slash = i;
+				break;
+			}
+		}
+		int ipEnd = slash < 0 ? cidr.length() : slash;
+		long ip = IpUtil.parseIpv4(cidr, 0, ipEnd, true);
+		if (ip == IpUtil.INVALID_IP) {
+			return false;
+		}
+		int prefix = 32;
+		if (slash >= 0) {
+			if (slash + 1 == cidr.length() || cidr.length() - slash - 1 > 2) {
+				return false;
+			}
+			prefix = 0;
+			for (int i = slash + 1; i < cidr.length(); i++) {
+				char c = cidr.charAt(i);
+				if (c < '0' || c > '9') {
+					return false;
+				}
+				prefix = prefix * 10 + (c - '0');
+			}
+			if (prefix > 32) {
+				return false;
+			}
+		}
+		long size = 1L << (32 - prefix);
+		out[0] = ip & ~(size - 1) & MAX_IP;
+		out[1] = out[0] + size - 1;
+		return true;
+	}
+
+	/**
+	 * 用最少的CIDR块覆盖[start, end]区间
+	 * @param start
+	 * @param end
+	 * @param out 结果追加到该列表
+	 */
+	public static void cover(long start, long end, List<String> out) {
+		if (start < 0 || end > MAX_IP) {
+			throw new IllegalArgumentException("IP段超出IPv4范围 [" + start + "-" + end + "].");
+		}
+		while (start <= end) {
+			// 以start对齐的最大块，且不超过剩余长度
+			long size = start == 0 ? 1L << 32 : Long.lowestOneBit(start);
+			while (size > end - start + 1) {
+				size >>>= 1;
+			}
+			out.add(format(start, 32 - Long.numberOfTrailingZeros(size)));
+			start += size;
+		}
+	}
+
+	/**
+	 * 格式化CIDR
+	 * @param ip 网络地址
+	 * @param prefix 前缀长度
+	 * @return
+	 */
+	public static String format(long ip, int prefix) {
+		return (ip >>> 24) + "." + ((ip >>> 16) & 0xFF) + "." + ((ip >>> 8) & 0xFF) + "." + (ip & 0xFF) + "/" + prefix;
+	}
+}
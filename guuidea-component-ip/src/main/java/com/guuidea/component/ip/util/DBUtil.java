@@ -31,6 +31,18 @@ public class DBUtil {
 		return DriverManager.getConnection(dbUrl, dbUsername, dbPassword);
 	}
 
+	/**
+	 * 按指定配置获取连接，不修改全局配置，多个IP表可同时使用不同的数据库加载
+	 * @param ipProviderInfo
+	 * @return
+	 * @throws SQLException
+	 * @throws ClassNotFoundException
+	 */
+	public static Connection getConnection(IPProviderInfo ipProviderInfo) throws SQLException, ClassNotFoundException {
+		Class.forName(ipProviderInfo.getDbDriver());
+		return DriverManager.getConnection(ipProviderInfo.getDbUrl(), ipProviderInfo.getDbUsername(), ipProviderInfo.getDbPassword());
+	}
+
 	public static void closeConnection(Connection connection, Statement statement, ResultSet result) {
 		try {
 			if (result != null) {
@@ -45,7 +57,7 @@ public class DBUtil {
 			} catch (Exception e2) {
 			} finally {
 				try {
-					if (result != null) {
+					if (connection != null) {
 						connection.close();
 					}
 				} catch (Exception e3) {
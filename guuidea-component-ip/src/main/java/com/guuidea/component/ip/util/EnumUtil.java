@@ -3,8 +3,16 @@ package com.guuidea.component.ip.util;
 import com.guuidea.component.ip.strategy.DataStrategy;
 import com.guuidea.component.ip.strategy.SearchDataStragtegy;
 import com.guuidea.component.ip.strategy.impl.AbroadDataStrategy;
+import com.guuidea.component.ip.strategy.impl.ArraySearch;
 import com.guuidea.component.ip.strategy.impl.BinarySearch;
+import com.guuidea.component.ip.strategy.impl.DirTableSearch;
+import com.guuidea.component.ip.strategy.impl.EytzingerSearch;
+import com.guuidea.component.ip.strategy.impl.FileDataStrategy;
+import com.guuidea.component.ip.strategy.impl.FusedDataStrategy;
 import com.guuidea.component.ip.strategy.impl.InlandDataStrategy;
+import com.guuidea.component.ip.strategy.impl.Ipv6DataStrategy;
+import com.guuidea.component.ip.strategy.impl.MappedSearch;
+import com.guuidea.component.ip.strategy.impl.SnapshotDataStrategy;
 
 /**
  * @Author: ll
@@ -17,6 +25,13 @@ public class EnumUtil {
     public enum DataSourceStrategyEnum {
         ABROAD(0, "国外单一数据源", new AbroadDataStrategy()),
         INLAND(1, "国内单一数据源", new InlandDataStrategy()),
+        SNAPSHOT(2, "本地快照文件数据源", new SnapshotDataStrategy()),
+        ABROAD_V6(3, "国外单一数据源，含IPv6", new Ipv6DataStrategy(new AbroadDataStrategy(),
+                "select ip_start,ip_end,-1,-1,ifnull(country_id,-1) from tbl_ipv6_info")),
+        INLAND_V6(4, "国内单一数据源，含IPv6", new Ipv6DataStrategy(new InlandDataStrategy(),
+                "select ip_start,ip_end,ifnull(province_id,-1),ifnull(city_id,-1),-1 from tbl_ipv6_info")),
+        FILE(5, "本地文本文件数据源(CSV/定宽)", new FileDataStrategy()),
+        FUSED(6, "国内与国外融合数据源，省份/城市取国内数据，国家取国外数据", new FusedDataStrategy(new InlandDataStrategy(), new AbroadDataStrategy())),
         ;
 
         private int code;
@@ -56,6 +71,11 @@ public class EnumUtil {
      */
     public enum SearchTypeStrategyEnum {
         BINARY(0, "二分查找单一源", new BinarySearch()),
+        ARRAY(1, "基本类型数组二分查找单一源", new ArraySearch()),
+        MAPPED(2, "内存映射快照查找", new MappedSearch()),
+        DIR_24(3, "DIR-24-8查表查找，首级表约64MB", new DirTableSearch(24)),
+        DIR_16(4, "DIR-16查表查找，首级表约256KB", new DirTableSearch(16)),
+        EYTZINGER(5, "Eytzinger布局无分支查找", new EytzingerSearch()),
         ;
 
         private int code;
@@ -0,0 +1,95 @@
+package com.guuidea.component.ip.util;
+
+import com.guuidea.component.ip.domain.IpRangeIndex;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * IP批量查询，数量较大时先排序再与IP段表归并，超大批量拆分到多个核上并行执行
+ */
+public class IpBatchSearchUtil {
+	/**
+	 * 小于该数量时逐个二分查找，排序的开销不划算
+	 */
+	private static final int SORT_THRESHOLD = 256;
+	/**
+	 * 单个并行任务处理的最大数量
+	 */
+	private static final int PARALLEL_THRESHOLD = 1 << 16;
+	private static final long MAX_IP = 0xFFFFFFFFL;
+
+	/**
+	 * 批量查询IP所在的IP段下标
+	 * @param index
+	 * @param ips
+	 * @param out 查询结果，与ips一一对应，未命中或IP无效时为-1
+	 */
+	public static void search(IpRangeIndex index, long[] ips, int[] out) {
+		if (out.length < ips.length) {
+			throw new IllegalArgumentException("结果数组长度不足");
+		}
+		if (ips.length > PARALLEL_THRESHOLD && ParallelUtil.isParallel()) {
+			ParallelUtil.getPool().invoke(new SearchTask(index, ips, out, 0, ips.length));
+		} else {
+			search(index, ips, out, 0, ips.length);
+		}
+	}
+
+	private static void search(IpRangeIndex index, long[] ips, int[] out, int from, int to) {
+		if (to - from < SORT_THRESHOLD) {
+			for (int i = from; i < to; i++) {
+				out[i] = index.indexOf(ips[i]);
+			}
+			return;
+		}
+		// 高32位为IP(翻转符号位使有符号排序等同于无符号排序)，低32位为原始位置
+		long[] keys = new long[to - from];
+		int count = 0;
+		for (int i = from; i < to; i++) {
+			long ip = ips[i];
+			if (ip < 0 || ip > MAX_IP) {
+				out[i] = -1;
+				continue;
+			}
+			keys[count++] = ((long) ((int) ip ^ Integer.MIN_VALUE) << 32) | (i - from);
+		}
+		Arrays.sort(keys, 0, count);
+		int floor = 0;
+		for (int k = 0; k < count; k++) {
+			long key = keys[k];
+			long ip = ((int) (key >> 32) ^ Integer.MIN_VALUE) & MAX_IP;
+			int position = from + (int) key;
+			// IP升序，上一次的位置之前的IP段起始IP必然不大于当前IP
+			floor = index.floorIndex(ip, Math.max(floor, 0));
+			out[position] = floor >= 0 && index.getEnd(floor) >= ip ? floor : -1;
+		}
+	}
+
+	private static class SearchTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final IpRangeIndex index;
+		private final long[] ips;
+		private final int[] out;
+		private final int from;
+		private final int to;
+
+		SearchTask(IpRangeIndex index, long[] ips, int[] out, int from, int to) {
+			this.index = index;
+			this.ips = ips;
+			this.out = out;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= PARALLEL_THRESHOLD) {
+				search(index, ips, out, from, to);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new SearchTask(index, ips, out, from, mid), new SearchTask(index, ips, out, mid, to));
+		}
+	}
+}
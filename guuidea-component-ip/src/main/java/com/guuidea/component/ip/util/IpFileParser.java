@@ -0,0 +1,344 @@
+package com.guuidea.component.ip.util;
+
+import com.guuidea.component.ip.domain.IpRangeIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * 解析CSV或定宽文本格式的IP段文件。文件按字节区间切分为多块，每块单独内存映射并由一个线程解析，
+ * 每块只解析起始位置落在本块内的行，跨越块边界的行由其起始所在的块读完，结果按块顺序拼接后构建索引。
+ * <p>
+ * 每行依次为起始IP、结束IP、省份ID、城市ID、国家ID，以及可选的国家名称、国家代码；
+ * IP可以是数值或点分IPv4，ID为空时视为-1；去掉前导空格和双引号后首字符不是数字的行(表头、注释、空行)会被跳过
+ */
+public class IpFileParser {
+
+	/**
+	 * 单行最大长度，块末尾的行最多越过边界这么多字节
+	 */
+	public static final int MAX_LINE_LENGTH = 1 << 16;
+	/**
+	 * 每块的最小字节数，小文件不切分
+	 */
+	private static final long MIN_CHUNK_SIZE = 1 << 20;
+	private static final long MAX_CHUNK_SIZE = 1 << 30;
+	private static final int COLUMNS = 7;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final char delimiter;
+	private final int[] columnWidths;
+
+	/**
+	 * CSV格式，字段两侧的双引号会被去掉
+	 * @param delimiter 分隔符
+	 */
+	public IpFileParser(char delimiter) {
+		this.delimiter = delimiter;
+		this.columnWidths = null;
+	}
+
+	/**
+	 * 定宽格式，字段两侧的空格会被去掉
+	 * @param columnWidths 各列宽度，5列或7列，最后一列可以短于给定宽度
+	 */
+	public IpFileParser(int[] columnWidths) {
+		if (columnWidths == null || (columnWidths.length != 5 && columnWidths.length != COLUMNS)) {
+			throw new IllegalArgumentException("定宽格式需要5列或7列");
+		}
+		this.delimiter = 0;
+		this.columnWidths = columnWidths.clone();
+	}
+
+	/**
+	 * 解析文件并构建索引
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 * @throws IllegalArgumentException 文件内容格式错误或IP段无效
+	 */
+	public IpRangeIndex parse(File file) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			long size = channel.size();
+			long chunks = Math.min(size / MIN_CHUNK_SIZE, ParallelUtil.isParallel() ? Runtime.getRuntime().availableProcessors() * 4 : 1);
+			// 单次映射不能超过2GB
+			chunks = Math.max(Math.max(chunks, 1), size / MAX_CHUNK_SIZE + 1);
+			List<ChunkTask> tasks = new ArrayList<ChunkTask>((int) chunks);
+			for (long i = 0; i < chunks; i++) {
+				tasks.add(new ChunkTask(channel, size, size * i / chunks, size * (i + 1) / chunks));
+			}
+			List<Chunk> results = new ArrayList<Chunk>(tasks.size());
+			if (tasks.size() == 1) {
+				results.add(tasks.get(0).call());
+			} else {
+				for (Future<Chunk> future : ParallelUtil.getPool().invokeAll(tasks)) {
+					results.add(getChunk(future));
+				}
+			}
+			int total = 0;
+			for (Chunk chunk : results) {
+				total += chunk.size;
+			}
+			IpRangeIndex.Builder builder = new IpRangeIndex.Builder(total);
+			for (Chunk chunk : results) {
+				chunk.appendTo(builder);
+			}
+			return builder.build();
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	private static Chunk getChunk(Future<Chunk> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("解析IP文件被中断", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * 解析[from, to)区间内开始的所有行
+	 */
+	private class ChunkTask implements Callable<Chunk> {
+		private final FileChannel channel;
+		private final long fileSize;
+		private final long from;
+		private final long to;
+
+		ChunkTask(FileChannel channel, long fileSize, long from, long to) {
+			this.channel = channel;
+			this.fileSize = fileSize;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public Chunk call() throws IOException {
+			// 多映射前一个字节用于判断块起点是否恰好为行首，多映射MAX_LINE_LENGTH用于读完跨越边界的行
+			long mapFrom = Math.max(0, from - 1);
+			long mapTo = Math.min(fileSize, to + MAX_LINE_LENGTH);
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, mapFrom, mapTo - mapFrom);
+			int limit = (int) (mapTo - mapFrom);
+			int end = (int) (to - mapFrom);
+			int pos = (int) (from - mapFrom);
+			if (from > 0 && buffer.get(pos - 1) != '\n') {
+				while (pos < limit && buffer.get(pos) != '\n') {
+					pos++;
+				}
+				pos++;
+			}
+			Chunk chunk = new Chunk((int) Math.max(16, (to - from) / 48));
+			byte[] line = new byte[256];
+			int[] fieldStarts = new int[COLUMNS];
+			int[] fieldEnds = new int[COLUMNS];
+			while (pos < end) {
+				int lineEnd = pos;
+				while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+					lineEnd++;
+				}
+				if (lineEnd == limit && mapTo < fileSize) {
+					throw new IllegalArgumentException("IP文件行长度超过" + MAX_LINE_LENGTH + "字节 [offset=" + (mapFrom + pos) + "].");
+				}
+				int length = lineEnd - pos;
+				if (length > 0 && buffer.get(lineEnd - 1) == '\r') {
+					length--;
+				}
+				if (length > line.length) {
+					line = new byte[Math.max(length, line.length * 2)];
+				}
+				buffer.position(pos);
+				buffer.get(line, 0, length);
+				parseLine(line, length, fieldStarts, fieldEnds, chunk, mapFrom + pos);
+				pos = lineEnd + 1;
+			}
+			return chunk;
+		}
+	}
+
+	private void parseLine(byte[] line, int length, int[] fieldStarts, int[] fieldEnds, Chunk chunk, long offset) {
+		int first = 0;
+		while (first < length && (line[first] == ' ' || line[first] == '"')) {
+			first++;
+		}
+		if (first == length || line[first] < '0' || line[first] > '9') {
+			return;
+		}
+		int fields = columnWidths == null ? splitCsv(line, length, fieldStarts, fieldEnds)
+				: splitFixed(line, length, fieldStarts, fieldEnds);
+		if (fields < 5) {
+			throw new IllegalArgumentException("IP文件列数不足 [offset=" + offset + "].");
+		}
+		long start = parseIp(line, fieldStarts[0], fieldEnds[0]);
+		long end = parseIp(line, fieldStarts[1], fieldEnds[1]);
+		if (start < 0 || end < 0) {
+			throw new IllegalArgumentException("IP文件中存在无效的IP [offset=" + offset + "].");
+		}
+		chunk.add(start, end, parseId(line, fieldStarts[2], fieldEnds[2], offset),
+				parseId(line, fieldStarts[3], fieldEnds[3], offset), parseId(line, fieldStarts[4], fieldEnds[4], offset),
+				fields > 5 ? text(line, fieldStarts[5], fieldEnds[5]) : null,
+				fields > 6 ? text(line, fieldStarts[6], fieldEnds[6]) : null);
+	}
+
+	private int splitCsv(byte[] line, int length, int[] fieldStarts, int[] fieldEnds) {
+		int fields = 0;
+		int fieldStart = 0;
+		for (int i = 0; i <= length && fields < COLUMNS; i++) {
+			if (i == length || line[i] == delimiter) {
+				setField(line, fieldStart, i, fields++, fieldStarts, fieldEnds);
+				fieldStart = i + 1;
+			}
+		}
+		return fields;
+	}
+
+	private int splitFixed(byte[] line, int length, int[] fieldStarts, int[] fieldEnds) {
+		int fields = 0;
+		int fieldStart = 0;
+		for (int i = 0; i < columnWidths.length && fieldStart < length; i++) {
+			int fieldEnd = Math.min(length, fieldStart + columnWidths[i]);
+			setField(line, fieldStart, fieldEnd, fields++, fieldStarts, fieldEnds);
+			fieldStart = fieldEnd;
+		}
+		return fields;
+	}
+
+	/**
+	 * 去掉字段两侧的空格和双引号
+	 */
+	private static void setField(byte[] line, int from, int to, int field, int[] fieldStarts, int[] fieldEnds) {
+		while (from < to && (line[from] == ' ' || line[from] == '"')) {
+			from++;
+		}
+		while (to > from && (line[to - 1] == ' ' || line[to - 1] == '"')) {
+			to--;
+		}
+		fieldStarts[field] = from;
+		fieldEnds[field] = to;
+	}
+
+	private static long parseIp(byte[] line, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (line[i] == '.') {
+				// IP段文件的第一行通常从0.0.0.0开始，需要允许首段为0
+				return IpUtil.parse(line, from, to - from, true);
+			}
+		}
+		if (from == to || to - from > 10) {
+			return IpUtil.INVALID_IP;
+		}
+		long value = 0L;
+		for (int i = from; i < to; i++) {
+			int digit = line[i] - '0';
+			if (digit < 0 || digit > 9) {
+				return IpUtil.INVALID_IP;
+			}
+			value = value * 10 + digit;
+		}
+		return value > 0xFFFFFFFFL ? IpUtil.INVALID_IP : value;
+	}
+
+	private static int parseId(byte[] line, int from, int to, long offset) {
+		if (from == to) {
+			return -1;
+		}
+		boolean negative = line[from] == '-';
+		int i = negative ? from + 1 : from;
+		if (i == to || to - i > 9) {
+			throw new IllegalArgumentException("IP文件中存在无效的ID [offset=" + offset + "].");
+		}
+		int value = 0;
+		for (; i < to; i++) {
+			int digit = line[i] - '0';
+			if (digit < 0 || digit > 9) {
+				throw new IllegalArgumentException("IP文件中存在无效的ID [offset=" + offset + "].");
+			}
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+
+	private static String text(byte[] line, int from, int to) {
+		return from == to ? null : new String(line, from, to - from, UTF_8);
+	}
+
+	/**
+	 * 单个块的解析结果，按文件中的顺序保存
+	 */
+	private static class Chunk {
+		private long[] starts;
+		private long[] ends;
+		private int[] provinceIds;
+		private int[] cityIds;
+		private int[] countryIds;
+		private String[] countryNames;
+		private String[] countryCodes;
+		private int size;
+
+		Chunk(int capacity) {
+			starts = new long[capacity];
+			ends = new long[capacity];
+			provinceIds = new int[capacity];
+			cityIds = new int[capacity];
+			countryIds = new int[capacity];
+		}
+
+		void add(long start, long end, int provinceId, int cityId, int countryId, String countryName, String countryCode) {
+			if (size == starts.length) {
+				int capacity = size + (size >> 1);
+				starts = Arrays.copyOf(starts, capacity);
+				ends = Arrays.copyOf(ends, capacity);
+				provinceIds = Arrays.copyOf(provinceIds, capacity);
+				cityIds = Arrays.copyOf(cityIds, capacity);
+				countryIds = Arrays.copyOf(countryIds, capacity);
+				if (countryNames != null) {
+					countryNames = Arrays.copyOf(countryNames, capacity);
+					countryCodes = Arrays.copyOf(countryCodes, capacity);
+				}
+			}
+			if ((countryName != null || countryCode != null) && countryNames == null) {
+				countryNames = new String[starts.length];
+				countryCodes = new String[starts.length];
+			}
+			starts[size] = start;
+			ends[size] = end;
+			provinceIds[size] = provinceId;
+			cityIds[size] = cityId;
+			countryIds[size] = countryId;
+			if (countryNames != null) {
+				countryNames[size] = countryName;
+				countryCodes[size] = countryCode;
+			}
+			size++;
+		}
+
+		void appendTo(IpRangeIndex.Builder builder) {
+			for (int i = 0; i < size; i++) {
+				builder.add(starts[i], ends[i], provinceIds[i], cityIds[i], countryIds[i],
+						countryNames == null ? null : countryNames[i], countryCodes == null ? null : countryCodes[i]);
+			}
+		}
+	}
+}
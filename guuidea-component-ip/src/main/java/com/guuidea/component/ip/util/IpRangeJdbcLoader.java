@@ -0,0 +1,149 @@
+package com.guuidea.component.ip.util;
+
+import com.guuidea.component.ip.domain.IpRangeIndex;
+import com.guuidea.component.ip.domain.IpTableDelta;
+import com.guuidea.component.ip.domain.Ipv6RangeIndex;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 流式读取IP段数据，按列类型直接读取数值并写入预先分配好容量的索引，
+ * 加载过程中的堆内存峰值接近最终索引本身的大小
+ */
+public class IpRangeJdbcLoader {
+
+	/**
+	 * 执行查询并构建索引
+	 * @param connection
+	 * @param countSql 统计行数的SQL，用于预先分配容量
+	 * @param selectSql 查询SQL，列依次为起始IP、结束IP、省份ID、城市ID、国家ID，均为数值且不能为null
+	 * @return
+	 * @throws SQLException
+	 */
+	public static IpRangeIndex load(Connection connection, String countSql, String selectSql) throws SQLException {
+		IpRangeIndex.Builder builder = new IpRangeIndex.Builder(count(connection, countSql));
+		Statement statement = null;
+		ResultSet result = null;
+		try {
+			statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			statement.setFetchSize(fetchSize(connection));
+			result = statement.executeQuery(selectSql);
+			while (result.next()) {
+				builder.add(result.getLong(1), result.getLong(2), result.getInt(3), result.getInt(4), result.getInt(5),
+						null, null);
+			}
+		} finally {
+			DBUtil.closeConnection(null, statement, result);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * 查询当前最大版本号，应在全量加载之前调用，加载期间修改的行会在下次增量加载时重新读取
+	 * @param connection
+	 * @param versionSql 返回单个数值的SQL，表为空时应返回0
+	 * @return
+	 * @throws SQLException
+	 */
+	public static long loadVersion(Connection connection, String versionSql) throws SQLException {
+		Statement statement = null;
+		ResultSet result = null;
+		try {
+			statement = connection.createStatement();
+			result = statement.executeQuery(versionSql);
+			return result.next() ? result.getLong(1) : 0L;
+		} finally {
+			DBUtil.closeConnection(null, statement, result);
+		}
+	}
+
+	/**
+	 * 按版本号增量加载IP段
+	 * @param connection
+	 * @param deltaSql 查询SQL，带一个版本号参数，列依次为起始IP、结束IP、省份ID、城市ID、国家ID、版本号
+	 * @param sinceVersion
+	 * @return 没有变化时版本号为sinceVersion
+	 * @throws SQLException
+	 */
+	public static IpTableDelta loadDelta(Connection connection, String deltaSql, long sinceVersion) throws SQLException {
+		IpRangeIndex.Builder builder = new IpRangeIndex.Builder(16);
+		long version = sinceVersion;
+		PreparedStatement statement = null;
+		ResultSet result = null;
+		try {
+			statement = connection.prepareStatement(deltaSql);
+			statement.setLong(1, sinceVersion);
+			result = statement.executeQuery();
+			while (result.next()) {
+				builder.add(result.getLong(1), result.getLong(2), result.getInt(3), result.getInt(4), result.getInt(5),
+						null, null);
+				version = Math.max(version, result.getLong(6));
+			}
+		} finally {
+			DBUtil.closeConnection(null, statement, result);
+		}
+		return new IpTableDelta(builder.build(), version);
+	}
+
+	/**
+	 * 执行查询并构建IPv6索引
+	 * @param connection
+	 * @param countSql 统计行数的SQL，用于预先分配容量
+	 * @param selectSql 查询SQL，列依次为起始IP、结束IP(IPv6文本)、省份ID、城市ID、国家ID，均不能为null
+	 * @return
+	 * @throws SQLException
+	 * @throws IllegalArgumentException IPv6地址无效
+	 */
+	public static Ipv6RangeIndex loadIpv6(Connection connection, String countSql, String selectSql) throws SQLException {
+		Ipv6RangeIndex.Builder builder = new Ipv6RangeIndex.Builder(count(connection, countSql));
+		long[] start = new long[2];
+		long[] end = new long[2];
+		Statement statement = null;
+		ResultSet result = null;
+		try {
+			statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			statement.setFetchSize(fetchSize(connection));
+			result = statement.executeQuery(selectSql);
+			while (result.next()) {
+				String startIp = result.getString(1);
+				String endIp = result.getString(2);
+				if (!IpUtil.parseIpv6(startIp, start) || !IpUtil.parseIpv6(endIp, end)) {
+					throw new IllegalArgumentException("无效的IPv6地址 [" + startIp + "-" + endIp + "].");
+				}
+				builder.add(start[0], start[1], end[0], end[1], result.getInt(3), result.getInt(4), result.getInt(5),
+						null, null);
+			}
+		} finally {
+			DBUtil.closeConnection(null, statement, result);
+		}
+		return builder.build();
+	}
+
+	private static int count(Connection connection, String countSql) throws SQLException {
+		Statement statement = null;
+		ResultSet result = null;
+		try {
+			statement = connection.createStatement();
+			result = statement.executeQuery(countSql);
+			return result.next() ? (int) Math.min(result.getLong(1), Integer.MAX_VALUE - 8) : 0;
+		} finally {
+			DBUtil.closeConnection(null, statement, result);
+		}
+	}
+
+	/**
+	 * MySQL驱动在fetchSize为Integer.MIN_VALUE时逐行流式返回结果；
+	 * 连接串开启useCursorFetch时改用服务端游标按批读取
+	 */
+	private static int fetchSize(Connection connection) throws SQLException {
+		String url = connection.getMetaData().getURL();
+		if (url != null && url.contains("useCursorFetch=true")) {
+			return 1000;
+		}
+		return Integer.MIN_VALUE;
+	}
+}
@@ -0,0 +1,105 @@
+package com.guuidea.component.ip.util;
+
+import com.guuidea.component.ip.domain.IpRangeIndex;
+import com.guuidea.component.ip.domain.RegionDictionary;
+
+import java.util.Arrays;
+
+/**
+ * 将多个IP段索引按优先级合并为一个互不重叠的索引。
+ * 所有IP段的起止点把IP空间切分为若干基本区间，每个基本区间的地区属性取自覆盖它的索引，合并后相邻且属性相同的区间再合并为一段
+ */
+public class IpRangeMergeUtil {
+
+	/**
+	 * 合并多个索引
+	 * @param sources 按优先级从高到低排列
+	 * @param fillMissing true时逐个属性取值，高优先级索引中为-1或null的属性由低优先级索引补全；
+	 *                    false时整段取优先级最高的索引，用于增量数据覆盖全量数据
+	 * @return
+	 */
+	public static IpRangeIndex merge(IpRangeIndex[] sources, boolean fillMissing) {
+		int total = 0;
+		for (IpRangeIndex source : sources) {
+			total += source.size();
+		}
+		long[] points = new long[total * 2];
+		int count = 0;
+		for (IpRangeIndex source : sources) {
+			for (int i = 0; i < source.size(); i++) {
+				points[count++] = source.getStart(i);
+				points[count++] = source.getEnd(i) + 1;
+			}
+		}
+		Arrays.sort(points);
+		int unique = 0;
+		for (int i = 0; i < count; i++) {
+			if (unique == 0 || points[unique - 1] != points[i]) {
+				points[unique++] = points[i];
+			}
+		}
+		IpRangeIndex.Builder builder = new IpRangeIndex.Builder(unique);
+		// 每个索引当前所在的IP段下标，基本区间升序遍历时只前进不后退
+		int[] cursors = new int[sources.length];
+		int[] covering = new int[sources.length];
+		for (int k = 0; k + 1 < unique; k++) {
+			long start = points[k];
+			long end = points[k + 1] - 1;
+			boolean covered = false;
+			for (int s = 0; s < sources.length; s++) {
+				IpRangeIndex source = sources[s];
+				int cursor = cursors[s];
+				while (cursor < source.size() && source.getEnd(cursor) < start) {
+					cursor++;
+				}
+				cursors[s] = cursor;
+				// 基本区间不跨越任何IP段的边界，起点被覆盖即整个区间被覆盖
+				if (cursor < source.size() && source.getStart(cursor) <= start) {
+					covering[s] = cursor;
+					covered = true;
+				} else {
+					covering[s] = -1;
+				}
+			}
+			if (covered) {
+				addMerged(builder, sources, covering, start, end, fillMissing);
+			}
+		}
+		return builder.build();
+	}
+
+	private static void addMerged(IpRangeIndex.Builder builder, IpRangeIndex[] sources, int[] covering, long start,
+								  long end, boolean fillMissing) {
+		int provinceId = -1;
+		int cityId = -1;
+		int countryId = -1;
+		String countryName = null;
+		String countryCode = null;
+		for (int s = 0; s < sources.length; s++) {
+			if (covering[s] < 0) {
+				continue;
+			}
+			RegionDictionary regions = sources[s].getRegions();
+			int region = sources[s].getRegionIndex(covering[s]);
+			if (provinceId == -1) {
+				provinceId = regions.getProvinceId(region);
+			}
+			if (cityId == -1) {
+				cityId = regions.getCityId(region);
+			}
+			if (countryId == -1) {
+				countryId = regions.getCountryId(region);
+			}
+			if (countryName == null) {
+				countryName = regions.getCountryName(region);
+			}
+			if (countryCode == null) {
+				countryCode = regions.getCountryCode(region);
+			}
+			if (!fillMissing) {
+				break;
+			}
+		}
+		builder.add(start, end, provinceId, cityId, countryId, countryName, countryCode);
+	}
+}
@@ -0,0 +1,159 @@
+package com.guuidea.component.ip.util;
+
+import com.guuidea.component.ip.domain.IpRangeIndex;
+import com.guuidea.component.ip.domain.RegionDictionary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 基于IP段索引的区间查询与地区查询，可输出最小CIDR覆盖，用于生成防火墙、CDN等按地区划分的规则
+ */
+public class IpRangeQueryUtil {
+
+	private static final int PROVINCE = 0;
+	private static final int CITY = 1;
+	private static final int COUNTRY = 2;
+
+	/**
+	 * 与[from, to]重叠的IP段下标
+	 * @param index
+	 * @param from
+	 * @param to
+	 * @return 按起始IP升序
+	 */
+	public static int[] overlapping(IpRangeIndex index, long from, long to) {
+		if (from > to) {
+			return new int[0];
+		}
+		int first = index.floorIndex(from, 0);
+		if (first < 0 || index.getEnd(first) < from) {
+			first++;
+		}
+		int last = index.floorIndex(to, Math.max(first, 0)) + 1;
+		if (last <= first) {
+			return new int[0];
+		}
+		int[] slots = new int[last - first];
+		for (int i = 0; i < slots.length; i++) {
+			slots[i] = first + i;
+		}
+		return slots;
+	}
+
+	/**
+	 * 与[from, to]重叠的地区字典下标
+	 * @param index
+	 * @param from
+	 * @param to
+	 * @return 升序且不重复
+	 */
+	public static int[] regionsOverlapping(IpRangeIndex index, long from, long to) {
+		int[] slots = overlapping(index, from, to);
+		int[] result = new int[slots.length];
+		for (int i = 0; i < slots.length; i++) {
+			result[i] = index.getRegionIndex(slots[i]);
+		}
+		Arrays.sort(result);
+		int unique = 0;
+		for (int i = 0; i < result.length; i++) {
+			if (unique == 0 || result[unique - 1] != result[i]) {
+				result[unique++] = result[i];
+			}
+		}
+		return Arrays.copyOf(result, unique);
+	}
+
+	/**
+	 * 省份的全部IP段下标
+	 * @param index
+	 * @param provinceId
+	 * @return 按起始IP升序
+	 */
+	public static int[] slotsByProvince(IpRangeIndex index, int provinceId) {
+		return slotsMatching(index, PROVINCE, provinceId);
+	}
+
+	public static int[] slotsByCity(IpRangeIndex index, int cityId) {
+		return slotsMatching(index, CITY, cityId);
+	}
+
+	public static int[] slotsByCountry(IpRangeIndex index, int countryId) {
+		return slotsMatching(index, COUNTRY, countryId);
+	}
+
+	/**
+	 * 合并属性匹配的各地区在倒排索引中的IP段下标
+	 */
+	private static int[] slotsMatching(IpRangeIndex index, int field, int id) {
+		RegionDictionary regions = index.getRegions();
+		int total = 0;
+		int matched = 0;
+		int[] matchedRegions = new int[regions.size()];
+		for (int r = 0; r < regions.size(); r++) {
+			int value = field == PROVINCE ? regions.getProvinceId(r)
+					: (field == CITY ? regions.getCityId(r) : regions.getCountryId(r));
+			if (value == id) {
+				matchedRegions[matched++] = r;
+				total += index.getRegionSlotCount(r);
+			}
+		}
+		if (matched == 1) {
+			return index.getRegionSlots(matchedRegions[0]);
+		}
+		int[] slots = new int[total];
+		int count = 0;
+		for (int i = 0; i < matched; i++) {
+			int[] regionSlots = index.getRegionSlots(matchedRegions[i]);
+			System.arraycopy(regionSlots, 0, slots, count, regionSlots.length);
+			count += regionSlots.length;
+		}
+		Arrays.sort(slots);
+		return slots;
+	}
+
+	/**
+	 * 输出IP段集合的最小CIDR覆盖，首尾相接的IP段先合并为一个区间
+	 * @param index
+	 * @param slots 按起始IP升序的IP段下标
+	 * @return
+	 */
+	public static List<String> toCidrs(IpRangeIndex index, int[] slots) {
+		return toCidrs(index, slots, 0L, 0xFFFFFFFFL);
+	}
+
+	/**
+	 * 输出IP段集合在[from, to]内部分的最小CIDR覆盖
+	 * @param index
+	 * @param slots 按起始IP升序的IP段下标
+	 * @param from
+	 * @param to
+	 * @return
+	 */
+	public static List<String> toCidrs(IpRangeIndex index, int[] slots, long from, long to) {
+		List<String> cidrs = new ArrayList<String>();
+		long start = -1L;
+		long end = -1L;
+		for (int slot : slots) {
+			long slotStart = Math.max(index.getStart(slot), from);
+			long slotEnd = Math.min(index.getEnd(slot), to);
+			if (slotStart > slotEnd) {
+				continue;
+			}
+			if (start >= 0 && end + 1 == slotStart) {
+				end = slotEnd;
+				continue;
+			}
+			if (start >= 0) {
+				CidrUtil.cover(start, end, cidrs);
+			}
+			start = slotStart;
+			end = slotEnd;
+		}
+		if (start >= 0) {
+			CidrUtil.cover(start, end, cidrs);
+		}
+		return cidrs;
+	}
+}
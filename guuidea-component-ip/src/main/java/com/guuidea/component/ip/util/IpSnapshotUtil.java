@@ -0,0 +1,206 @@
+package com.guuidea.component.ip.util;
+
+import com.guuidea.component.ip.domain.IpRangeIndex;
+import com.guuidea.component.ip.domain.IpTableHolder;
+import com.guuidea.component.ip.domain.MappedIpTable;
+import com.guuidea.component.ip.domain.RegionDictionary;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * IP快照文件的导出与映射
+ * <p>
+ * 文件格式(大端序)：
+ * 头部 magic(int) version(int) IP段数量n(int) 地区字典大小m(int)；
+ * 随后依次为n个起始IP、n个结束IP、n个地区字典下标(均为int，IP按无符号存储)；
+ * 最后为m个地区，每个地区为provinceId、cityId、countryId(int)及countryName、countryCode(长度int + UTF-8字节，长度-1表示null)。
+ * <p>
+ * 快照只包含IPv4表，IPv6表不会导出，使用SNAPSHOT数据源时IPv6查询均返回null
+ */
+public class IpSnapshotUtil {
+	public static final int MAGIC = 0x47444950;
+	public static final int VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+	private static final long MAX_IP = 0xFFFFFFFFL;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * 将已加载的IP表导出为快照文件，先写临时文件并刷到磁盘后再原子替换，正在映射旧文件的进程不受影响，
+	 * 导出过程中宕机也不会留下不完整的快照文件，导出失败时删除临时文件；IPv6表不会导出
+	 * @param ipTableHolder
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void export(IpTableHolder ipTableHolder, File file) throws IOException {
+		IpRangeIndex index = ipTableHolder.getIpRangeIndex();
+		if (index == null) {
+			throw new IllegalArgumentException("IP表未加载，无法导出快照");
+		}
+		int size = index.size();
+		for (int i = 0; i < size; i++) {
+			if (index.getStart(i) < 0 || index.getEnd(i) > MAX_IP) {
+				throw new IllegalArgumentException("IP段超出IPv4范围 [" + index.getStart(i) + "-" + index.getEnd(i) + "].");
+			}
+		}
+		RegionDictionary regions = index.getRegions();
+
+		File tmp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+		boolean replaced = false;
+		try {
+			FileOutputStream fileOut = new FileOutputStream(tmp);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(size);
+				out.writeInt(regions.size());
+				for (int i = 0; i < size; i++) {
+					out.writeInt((int) index.getStart(i));
+				}
+				for (int i = 0; i < size; i++) {
+					out.writeInt((int) index.getEnd(i));
+				}
+				for (int i = 0; i < size; i++) {
+					out.writeInt(index.getRegionIndex(i));
+				}
+				for (int region = 0; region < regions.size(); region++) {
+					out.writeInt(regions.getProvinceId(region));
+					out.writeInt(regions.getCityId(region));
+					out.writeInt(regions.getCountryId(region));
+					writeString(out, regions.getCountryName(region));
+					writeString(out, regions.getCountryCode(region));
+				}
+				out.flush();
+				// 替换前确保数据已落盘，否则宕机后可能留下被替换为空文件或截断文件的快照
+				fileOut.getChannel().force(true);
+			} finally {
+				out.close();
+			}
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			replaced = true;
+		} finally {
+			if (!replaced) {
+				// 写入或替换失败时不在目标目录中残留临时文件
+				tmp.delete();
+			}
+		}
+		syncDirectory(file.getAbsoluteFile().getParentFile());
+	}
+
+	/**
+	 * 将目录项的修改刷到磁盘，使替换在宕机后仍然有效；部分平台(如Windows)不支持打开目录，忽略即可
+	 */
+	private static void syncDirectory(File directory) {
+		try {
+			FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+			try {
+				channel.force(true);
+			} finally {
+				channel.close();
+			}
+		} catch (IOException e) {
+			// 不支持时依赖文件系统自身的提交
+		}
+	}
+
+	/**
+	 * 以只读方式映射快照文件，IP段数据不复制到堆内；映射时按顺序校验一遍IP段与地区下标
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static MappedIpTable map(File file) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		MappedByteBuffer buffer;
+		try {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("IP快照文件过大 [" + file + "].");
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			// 映射建立后关闭通道不影响映射区域
+			channel.close();
+		}
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new IOException("无效的IP快照文件 [" + file + "].");
+		}
+		if (buffer.getInt(4) != VERSION) {
+			throw new IOException("不支持的IP快照版本 [" + buffer.getInt(4) + "].");
+		}
+		int size = buffer.getInt(8);
+		int payloadCount = buffer.getInt(12);
+		long payloadOffset = HEADER_SIZE + (long) size * 12;
+		if (size < 0 || payloadCount < 0 || payloadOffset > buffer.capacity()) {
+			throw new IOException("IP快照文件已损坏 [" + file + "].");
+		}
+		ByteBuffer payloadBuffer = buffer.duplicate();
+		payloadBuffer.position((int) payloadOffset);
+		RegionDictionary.Builder regions = new RegionDictionary.Builder();
+		try {
+			for (int i = 0; i < payloadCount; i++) {
+				int provinceId = payloadBuffer.getInt();
+				int cityId = payloadBuffer.getInt();
+				int countryId = payloadBuffer.getInt();
+				String countryName = readString(payloadBuffer);
+				String countryCode = readString(payloadBuffer);
+				if (regions.add(provinceId, cityId, countryId, countryName, countryCode) != i) {
+					throw new IOException("IP快照文件属性表存在重复项 [" + file + "].");
+				}
+			}
+		} catch (BufferUnderflowException e) {
+			throw new IOException("IP快照文件已损坏 [" + file + "].", e);
+		}
+		// 查询时直接在映射区域上二分查找，IP段无效、乱序、重叠或地区下标越界时在映射时报错，而不是查询时返回错误的地区
+		int endsOffset = HEADER_SIZE + size * 4;
+		int regionIndexOffset = HEADER_SIZE + size * 8;
+		long previousEnd = -1;
+		for (int i = 0; i < size; i++) {
+			long start = buffer.getInt(HEADER_SIZE + (i << 2)) & MAX_IP;
+			long end = buffer.getInt(endsOffset + (i << 2)) & MAX_IP;
+			if (start > end || start <= previousEnd) {
+				throw new IOException("IP快照文件IP段无效、未排序或存在重叠 [" + file + ", index=" + i + "].");
+			}
+			previousEnd = end;
+			int region = buffer.getInt(regionIndexOffset + (i << 2));
+			if (region < 0 || region >= payloadCount) {
+				throw new IOException("IP快照文件地区下标越界 [" + file + ", index=" + i + ", region=" + region + "].");
+			}
+		}
+		return new MappedIpTable(buffer, size, HEADER_SIZE, regions.build());
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0) {
+			return null;
+		}
+		if (length > buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, UTF_8);
+	}
+}
@@ -2,31 +2,354 @@ package com.guuidea.component.ip.util;
 
 public class IpUtil {
 
+	/**
+	 * 无效IP的返回值
+	 */
+	public static final long INVALID_IP = -1L;
+
 	public static long ip2Long(String ip) throws Exception {
 		if (ip == null || ip.length() == 0) {
 			return 0L;
 		}
-		String[] digits = ip.replaceAll(" ", "").split("\\.");
-		long[] temp = (long[]) null;
-		boolean invalid = true;
+		long value = parse(ip, 0, ip.length());
+		if (value == INVALID_IP) {
+			throw new Exception("无效的IP地址 [" + ip + "].");
+		}
+		return value;
+	}
+
+	/**
+	 * 单次遍历解析IPv4地址，不创建对象也不抛出异常，忽略其中的空格
+	 * @param ip
+	 * @return IP数值，无效时返回INVALID_IP
+	 */
+	public static long parse(CharSequence ip) {
+		if (ip == null) {
+			return INVALID_IP;
+		}
+		return parse(ip, 0, ip.length());
+	}
 
-		if (digits.length == 4) {
-			temp = new long[] { Long.parseLong(digits[0]), Long.parseLong(digits[1]), Long.parseLong(digits[2]),
-					Long.parseLong(digits[3]) };
+	/**
+	 * 解析字符序列[from, to)区间内的IPv4地址
+	 * @param ip
+	 * @param from
+	 * @param to
+	 * @return IP数值，无效时返回INVALID_IP
+	 */
+	public static long parse(CharSequence ip, int from, int to) {
+		return parseIpv4(ip, null, from, to, false);
+	}
 
-			invalid = (temp[0] <= 0L) || (temp[0] > 255L) || (temp[1] < 0L) || (temp[1] > 255L) || (temp[2] < 0L)
-					|| (temp[2] > 255L) || (temp[3] < 0L) || (temp[3] > 255L);
+	/**
+	 * 解析字节数组中的IPv4地址(ASCII)，可直接用于请求头等原始字节，无需先转换为字符串
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 * @return IP数值，无效时返回INVALID_IP
+	 */
+	public static long parse(byte[] bytes, int offset, int length) {
+		return parseIpv4(null, bytes, offset, offset + length, false);
+	}
+
+	/**
+	 * 解析字节数组中的IPv4地址(ASCII)
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 * @param embedded 为true时允许首段为0(如IP段文件中的0.0.0.0)，但不忽略空格
+	 * @return IP数值，无效时返回INVALID_IP
+	 */
+	public static long parse(byte[] bytes, int offset, int length, boolean embedded) {
+		return parseIpv4(null, bytes, offset, offset + length, embedded);
+	}
+
+	/**
+	 * 批量解析IPv4地址
+	 * @param ips
+	 * @param out 解析结果，长度不小于ips，无效的IP对应INVALID_IP
+	 * @return 有效IP的数量
+	 */
+	public static int parse(CharSequence[] ips, long[] out) {
+		if (out.length < ips.length) {
+			throw new IllegalArgumentException("结果数组长度不足");
 		}
-		if (invalid) {
+		int valid = 0;
+		for (int i = 0; i < ips.length; i++) {
+			long value = parse(ips[i]);
+			out[i] = value;
+			if (value != INVALID_IP) {
+				valid++;
+			}
+		}
+		return valid;
+	}
 
-			throw new Exception("无效的IP地址 [" + ip + "].");
+	/**
+	 * 解析IPv6地址为高低两个64位数值，支持"::"缩写及末尾内嵌IPv4(如::ffff:1.2.3.4)，不支持区域标识(%eth0)
+	 * @param ip
+	 * @param out 长度不小于2，解析成功时out[0]为高64位，out[1]为低64位
+	 * @return 是否有效
+	 */
+	public static boolean parseIpv6(CharSequence ip, long[] out) {
+		if (ip == null) {
+			return false;
 		}
+		return parseIpv6(ip, 0, ip.length(), out);
+	}
+
+	/**
+	 * 解析字符序列[from, to)区间内的IPv6地址
+	 * @param ip
+	 * @param from
+	 * @param to
+	 * @param out 长度不小于2，解析成功时out[0]为高64位，out[1]为低64位
+	 * @return 是否有效
+	 */
+	public static boolean parseIpv6(CharSequence ip, int from, int to, long[] out) {
+		long hi = 0L;
+		long lo = 0L;
+		int groups = 0;
+		// "::"之前的分组数，-1表示没有缩写
+		int compressAt = -1;
+		int i = from;
+		if (i < to && ip.charAt(i) == ':') {
+			if (i + 1 >= to || ip.charAt(i + 1) != ':') {
+				return false;
+			}
+			compressAt = 0;
+			i += 2;
+		}
+		while (i < to) {
+			int groupStart = i;
+			int value = 0;
+			int digits = 0;
+			while (i < to) {
+				int digit = hexDigit(ip.charAt(i));
+				if (digit < 0) {
+					break;
+				}
+				if (++digits > 4) {
+					return false;
+				}
+				value = (value << 4) | digit;
+				i++;
+			}
+			if (i < to && ip.charAt(i) == '.') {
+				// 内嵌IPv4，只能位于末尾并占用两个分组
+				long ipv4 = parseIpv4(ip, groupStart, to, true);
+				if (ipv4 == INVALID_IP || groups > 6) {
+					return false;
+				}
+				hi = (hi << 32) | (lo >>> 32);
+				lo = (lo << 32) | ipv4;
+				groups += 2;
+				break;
+			}
+			if (digits == 0 || groups == 8) {
+				return false;
+			}
+			hi = (hi << 16) | (lo >>> 48);
+			lo = (lo << 16) | value;
+			groups++;
+			if (i == to) {
+				break;
+			}
+			if (ip.charAt(i) != ':' || ++i == to) {
+				return false;
+			}
+			if (ip.charAt(i) == ':') {
+				if (compressAt >= 0) {
+					return false;
+				}
+				compressAt = groups;
+				i++;
+			}
+		}
+		if (compressAt < 0) {
+			if (groups != 8) {
+				return false;
+			}
+		} else {
+			if (groups > 7) {
+				return false;
+			}
+			// "::"之后的分组保留在低位，之前的分组移到高位
+			int tailBits = (groups - compressAt) * 16;
+			int headShift = (8 - compressAt) * 16;
+			long tailHi = tailBits >= 64 ? hi & lowMask(tailBits - 64) : 0L;
+			long tailLo = tailBits >= 64 ? lo : lo & lowMask(tailBits);
+			long headHi = shiftRightHi(hi, tailBits);
+			long headLo = shiftRightLo(hi, lo, tailBits);
+			hi = shiftLeftHi(headHi, headLo, headShift) | tailHi;
+			lo = shiftLeftLo(headLo, headShift) | tailLo;
+		}
+		out[0] = hi;
+		out[1] = lo;
+		return true;
+	}
+
+	/**
+	 * 是否为IPv4映射地址(::ffff:a.b.c.d)，此类地址应使用IPv4表查询
+	 * @param hi
+	 * @param lo
+	 * @return
+	 */
+	public static boolean isIpv4Mapped(long hi, long lo) {
+		return hi == 0L && (lo >>> 32) == 0xFFFFL;
+	}
+
+	/**
+	 * 取IPv4映射地址中的IPv4数值
+	 * @param lo
+	 * @return
+	 */
+	public static long ipv4OfMapped(long lo) {
+		return lo & 0xFFFFFFFFL;
+	}
 
-		temp[0] <<= 24;
-		temp[1] <<= 16;
-		temp[2] <<= 8;
+	/**
+	 * 按RFC 5952格式输出IPv6地址：小写、省略前导零、最长的连续零分组缩写为"::"
+	 * @param hi
+	 * @param lo
+	 * @return
+	 */
+	public static String formatIpv6(long hi, long lo) {
+		if (isIpv4Mapped(hi, lo)) {
+			long ipv4 = ipv4OfMapped(lo);
+			return "::ffff:" + (ipv4 >>> 24) + "." + ((ipv4 >>> 16) & 0xFF) + "." + ((ipv4 >>> 8) & 0xFF) + "." + (ipv4 & 0xFF);
+		}
+		int[] groups = new int[8];
+		for (int i = 0; i < 4; i++) {
+			groups[i] = (int) (hi >>> (48 - i * 16)) & 0xFFFF;
+			groups[i + 4] = (int) (lo >>> (48 - i * 16)) & 0xFFFF;
+		}
+		int bestStart = -1;
+		int bestLength = 1;
+		for (int i = 0; i < 8; ) {
+			if (groups[i] != 0) {
+				i++;
+				continue;
+			}
+			int start = i;
+			while (i < 8 && groups[i] == 0) {
+				i++;
+			}
+			if (i - start > bestLength) {
+				bestStart = start;
+				bestLength = i - start;
+			}
+		}
+		StringBuilder builder = new StringBuilder(39);
+		for (int i = 0; i < 8; i++) {
+			if (i == bestStart) {
+				builder.append("::");
+				i += bestLength - 1;
+				continue;
+			}
+			if (builder.length() > 0 && builder.charAt(builder.length() - 1) != ':') {
+				builder.append(':');
+			}
+			builder.append(Integer.toHexString(groups[i]));
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * 无符号比较两个128位数值
+	 * @return 小于、等于、大于分别返回负数、0、正数
+	 */
+	public static int compareIpv6(long hi1, long lo1, long hi2, long lo2) {
+		if (hi1 != hi2) {
+			return (hi1 ^ Long.MIN_VALUE) < (hi2 ^ Long.MIN_VALUE) ? -1 : 1;
+		}
+		if (lo1 != lo2) {
+			return (lo1 ^ Long.MIN_VALUE) < (lo2 ^ Long.MIN_VALUE) ? -1 : 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * 内嵌于IPv6或CIDR中时允许首段为0(如::ffff:0.0.0.0、0.0.0.0/0)，但不忽略空格
+	 */
+	static long parseIpv4(CharSequence ip, int from, int to, boolean embedded) {
+		return parseIpv4(ip, null, from, to, embedded);
+	}
+
+	/**
+	 * 字符序列与字节数组共用的解析过程，chars为null时从bytes中读取
+	 */
+	private static long parseIpv4(CharSequence chars, byte[] bytes, int from, int to, boolean embedded) {
+		long result = 0L;
+		int octet = -1;
+		int dots = 0;
+		for (int i = from; i < to; i++) {
+			int c = chars != null ? chars.charAt(i) : bytes[i];
+			if (c >= '0' && c <= '9') {
+				octet = octet < 0 ? c - '0' : octet * 10 + (c - '0');
+				if (octet > 255) {
+					return INVALID_IP;
+				}
+			} else if (c == '.') {
+				if (octet < 0 || dots == 3 || (dots == 0 && octet == 0 && !embedded)) {
+					return INVALID_IP;
+				}
+				result = (result << 8) | octet;
+				octet = -1;
+				dots++;
+			} else if (c != ' ' || embedded) {
+				return INVALID_IP;
+			}
+		}
+		if (dots != 3 || octet < 0) {
+			return INVALID_IP;
+		}
+		return (result << 8) | octet;
+	}
+
+	private static int hexDigit(char c) {
+		if (c >= '0' && c <= '9') {
+			return c - '0';
+		}
+		if (c >= 'a' && c <= 'f') {
+			return c - 'a' + 10;
+		}
+		if (c >= 'A' && c <= 'F') {
+			return c - 'A' + 10;
+		}
+		return -1;
+	}
+
+	private static long lowMask(int bits) {
+		return bits >= 64 ? -1L : (1L << bits) - 1;
+	}
+
+	private static long shiftRightHi(long hi, int bits) {
+		return bits >= 64 ? 0L : hi >>> bits;
+	}
+
+	private static long shiftRightLo(long hi, long lo, int bits) {
+		if (bits == 0) {
+			return lo;
+		}
+		if (bits >= 64) {
+			return bits >= 128 ? 0L : hi >>> (bits - 64);
+		}
+		return (lo >>> bits) | (hi << (64 - bits));
+	}
+
+	private static long shiftLeftHi(long hi, long lo, int bits) {
+		if (bits == 0) {
+			return hi;
+		}
+		if (bits >= 64) {
+			return bits >= 128 ? 0L : lo << (bits - 64);
+		}
+		return (hi << bits) | (lo >>> (64 - bits));
+	}
 
-		return temp[0] | temp[1] | temp[2] | temp[3];
+	private static long shiftLeftLo(long lo, int bits) {
+		return bits >= 64 ? 0L : lo << bits;
 	}
 
 	public static void main(String[] args) {
@@ -0,0 +1,28 @@
+package com.guuidea.component.ip.util;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 组件内共享的并行计算线程池(JDK7中没有ForkJoinPool.commonPool)
+ */
+public class ParallelUtil {
+	private static volatile ForkJoinPool pool;
+
+	public static ForkJoinPool getPool() {
+		ForkJoinPool current = pool;
+		if (current == null) {
+			synchronized (ParallelUtil.class) {
+				current = pool;
+				if (current == null) {
+					current = new ForkJoinPool();
+					pool = current;
+				}
+			}
+		}
+		return current;
+	}
+
+	public static boolean isParallel() {
+		return Runtime.getRuntime().availableProcessors() > 1;
+	}
+}
@@ -0,0 +1,295 @@
+package com.guuidea.component.ip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.guuidea.component.ip.domain.DirTableIndexTest;
+import com.guuidea.component.ip.domain.IPProviderInfo;
+import com.guuidea.component.ip.domain.IpRange;
+import com.guuidea.component.ip.domain.IpRangeIndex;
+import com.guuidea.component.ip.domain.IpTableHolder;
+import com.guuidea.component.ip.domain.Ipv6RangeIndex;
+import com.guuidea.component.ip.strategy.DataStrategy;
+import com.guuidea.component.ip.strategy.impl.ArraySearch;
+
+/**
+ * 多块并行处理的日志分析与逐行查询的结果对照，覆盖跨越块边界的行、CRLF换行、空行及末尾没有换行符的行
+ */
+public class AccessLogAnalyzerTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final long MAX_IP = 0xFFFFFFFFL;
+    private static final int MB = 1 << 20;
+    private static final String UNKNOWN_REGION = "-\t-\t-";
+    private static final String[] CODES = {null, "CN", "US"};
+    private IpRangeIndex index;
+    private IpLookupService service;
+    private File log;
+    private File out;
+
+    @Before
+    public void setUp() throws Exception {
+        Random random = new Random(20200420L);
+        IpRangeIndex ranges = DirTableIndexTest.randomIndex(random, 300);
+        IpRangeIndex.Builder builder = new IpRangeIndex.Builder(ranges.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            builder.add(ranges.getStart(i), ranges.getEnd(i), random.nextInt(30) - 1, random.nextInt(5) - 1, random.nextInt(3),
+                    null, CODES[random.nextInt(CODES.length)]);
+        }
+        index = builder.build();
+        final IpTableHolder holder = new IpTableHolder();
+        holder.setIpRangeIndex(index);
+        holder.setIpv6RangeIndex(new Ipv6RangeIndex.Builder(2)
+                .add(0x20010db800000000L, 0L, 0x20010db8ffffffffL, -1L, 900, 9001, 1, null, "DE")
+                .add(0x2400000000000000L, 0L, 0x240fffffffffffffL, -1L, 901, -1, 2, null, null)
+                .build());
+        service = new IpLookupService(new DataStrategy() {
+            @Override
+            public IpTableHolder load(List<IPProviderInfo> ipProviderInfos) {
+                return holder;
+            }
+        }, new ArraySearch(), Collections.<IPProviderInfo>emptyList());
+        service.load();
+        log = File.createTempFile("access-log", ".log");
+        out = File.createTempFile("access-log", ".out");
+    }
+
+    @After
+    public void tearDown() {
+        service.shutdown();
+        log.delete();
+        out.delete();
+    }
+
+    @Test
+    public void testRandomLines() throws IOException {
+        Random random = new Random(20200423L);
+        for (int ipField : new int[]{0, 2}) {
+            List<String> lines = new ArrayList<String>();
+            List<String> regions = new ArrayList<String>();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            // 约5MB，按块切分时多数块边界落在行中间
+            while (bytes.size() < 5 * MB) {
+                String region = randomLine(random, ipField, lines);
+                regions.add(region);
+                String terminator = random.nextInt(3) == 0 ? "\r\n" : "\n";
+                bytes.write((lines.get(lines.size() - 1) + terminator).getBytes(UTF_8));
+            }
+            // 末尾的行没有换行符
+            regions.add(randomLine(random, ipField, lines));
+            bytes.write(lines.get(lines.size() - 1).getBytes(UTF_8));
+            write(bytes.toByteArray());
+            assertAnalyzed(ipField, lines, regions);
+        }
+    }
+
+    @Test
+    public void testBoundaryAtLineStart() throws IOException {
+        // 4MB切为4块，64字节的行使每个块边界恰好为行首
+        assertFixedLines(0, "\n");
+    }
+
+    @Test
+    public void testBoundaryInsideCrlf() throws IOException {
+        // 开头的空行使每个块边界恰好落在\r与\n之间
+        assertFixedLines(1, "\r\n");
+    }
+
+    private void assertFixedLines(int shift, String terminator) throws IOException {
+        Random random = new Random(20200424L);
+        List<String> lines = new ArrayList<String>();
+        List<String> regions = new ArrayList<String>();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        if (shift > 0) {
+            lines.add("");
+            regions.add(null);
+            bytes.write('\n');
+        }
+        while (bytes.size() + 64 <= 4 * MB) {
+            regions.add(randomLine(random, 0, lines));
+            String line = pad(lines.remove(lines.size() - 1), 64 - terminator.length());
+            lines.add(line);
+            bytes.write((line + terminator).getBytes(UTF_8));
+        }
+        // 剩余不足一行的字节作为没有换行符的最后一行
+        if (bytes.size() < 4 * MB) {
+            regions.add(randomLine(random, 0, lines));
+            String line = pad(lines.remove(lines.size() - 1), 4 * MB - bytes.size());
+            lines.add(line);
+            bytes.write(line.getBytes(UTF_8));
+        }
+        Assert.assertEquals(4 * MB, bytes.size());
+        write(bytes.toByteArray());
+        if (shift > 0) {
+            RandomAccessFile file = new RandomAccessFile(log, "r");
+            try {
+                file.seek(MB - 1);
+                Assert.assertEquals('\r', file.read());
+                Assert.assertEquals('\n', file.read());
+            } finally {
+                file.close();
+            }
+        }
+        assertAnalyzed(0, lines, regions);
+    }
+
+    private void assertAnalyzed(int ipField, List<String> lines, List<String> regions) throws IOException {
+        AccessLogAnalyzer analyzer = new AccessLogAnalyzer(service);
+        analyzer.setIpField(ipField);
+        Assert.assertEquals(lines.size(), analyzer.enrich(log, out));
+        String enriched = read(out);
+        Assert.assertTrue(enriched.endsWith("\n"));
+        // 逐行比较，失败时只输出出错的行
+        String[] outLines = enriched.substring(0, enriched.length() - 1).split("\n", -1);
+        Assert.assertEquals(lines.size(), outLines.length);
+        Map<String, Long> counts = new HashMap<String, Long>();
+        for (int i = 0; i < lines.size(); i++) {
+            String region = regions.get(i);
+            Assert.assertEquals("line=" + i, lines.get(i) + "\t" + (region == null ? UNKNOWN_REGION : region), outLines[i]);
+            String key = region == null ? AccessLogAnalyzer.UNKNOWN : region;
+            Long count = counts.get(key);
+            counts.put(key, count == null ? 1L : count + 1);
+        }
+        Assert.assertEquals(counts, analyzer.aggregate(log, AccessLogAnalyzer.GroupBy.REGION));
+    }
+
+    /**
+     * 生成一行日志追加到lines，返回逐段查询得到的地区，未命中或IP无效时返回null
+     */
+    private String randomLine(Random random, int ipField, List<String> lines) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < ipField; i++) {
+            line.append(random.nextBoolean() ? "host" + i : "-").append(random.nextBoolean() ? ' ' : '\t');
+        }
+        String region;
+        int kind = random.nextInt(12);
+        if (kind < 6) {
+            long ip = randomIp(random);
+            String text = (ip >>> 24) + "." + ((ip >>> 16) & 0xFF) + "." + ((ip >>> 8) & 0xFF) + "." + (ip & 0xFF);
+            switch (kind) {
+                case 1:
+                    text = text + ":" + random.nextInt(65536);
+                    break;
+                case 2:
+                    text = "\"" + text + "\"";
+                    break;
+                case 3:
+                    text = "::ffff:" + text;
+                    break;
+                default:
+                    break;
+            }
+            line.append(text);
+            // 点分IPv4首段为0时不是有效的客户端IP，按无效IP处理；IPv4映射地址按IPv6解析，不受此限制
+            region = ip >>> 24 == 0 && kind != 3 ? null : ipv4Region(ip);
+        } else if (kind < 9) {
+            long hi;
+            if (kind == 6) {
+                hi = 0x20010db800000000L | (random.nextLong() & 0xFFFFFFFFL);
+                region = "DE\t900\t9001";
+            } else if (kind == 7) {
+                hi = 0x2400000000000000L | (random.nextLong() & 0x000FFFFFFFFFFFFFL);
+                region = "2\t901\t-";
+            } else {
+                hi = 0x3000000000000000L | (random.nextLong() & 0x0FFFFFFFFFFFFFFFL);
+                region = null;
+            }
+            String text = hex(hi) + ":" + hex(random.nextLong());
+            line.append(random.nextBoolean() ? text : "[" + text + "]:" + random.nextInt(65536));
+        } else if (kind < 11) {
+            line.append(random.nextBoolean() ? "-" : "999.1.2.3");
+            region = null;
+        } else {
+            lines.add(line.toString());
+            return null;
+        }
+        line.append(" - - [17/Apr/2020:10:00:00 +0800] \"GET /");
+        int padding = random.nextInt(8) == 0 ? random.nextInt(4000) : random.nextInt(120);
+        for (int i = 0; i < padding; i++) {
+            line.append((char) ('a' + random.nextInt(26)));
+        }
+        line.append(" HTTP/1.1\" 200 ").append(random.nextInt(100000));
+        lines.add(line.toString());
+        return region;
+    }
+
+    private long randomIp(Random random) {
+        if (random.nextBoolean()) {
+            return random.nextLong() & MAX_IP;
+        }
+        int slot = random.nextInt(index.size());
+        long[] candidates = {index.getStart(slot) - 1, index.getStart(slot), index.getEnd(slot), index.getEnd(slot) + 1};
+        return Math.max(0, Math.min(MAX_IP, candidates[random.nextInt(candidates.length)]));
+    }
+
+    private String ipv4Region(long ip) {
+        int slot = DirTableIndexTest.scan(index, ip);
+        if (slot < 0) {
+            return null;
+        }
+        IpRange range = index.get(slot);
+        String country = range.getCountryCode() != null ? range.getCountryCode() : id(range.getCountryId());
+        return country + "\t" + id(range.getProvinceId()) + "\t" + id(range.getCityId());
+    }
+
+    private static String id(int id) {
+        return id < 0 ? AccessLogAnalyzer.UNKNOWN : String.valueOf(id);
+    }
+
+    /**
+     * 64位按4组16进制输出，不压缩0
+     */
+    private static String hex(long value) {
+        return Long.toHexString(value >>> 48) + ":" + Long.toHexString((value >>> 32) & 0xFFFF) + ":"
+                + Long.toHexString((value >>> 16) & 0xFFFF) + ":" + Long.toHexString(value & 0xFFFF);
+    }
+
+    /**
+     * 截断或以空格补齐到指定字节数，行内只有ASCII字符
+     */
+    private static String pad(String line, int length) {
+        if (line.length() >= length) {
+            return line.substring(0, length);
+        }
+        StringBuilder padded = new StringBuilder(line);
+        while (padded.length() < length) {
+            padded.append(' ');
+        }
+        return padded.toString();
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        OutputStream output = new FileOutputStream(log);
+        try {
+            output.write(bytes);
+        } finally {
+            output.close();
+        }
+    }
+
+    private static String read(File file) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            byte[] bytes = new byte[(int) input.length()];
+            input.readFully(bytes);
+            return new String(bytes, UTF_8);
+        } finally {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.guuidea.component.ip;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.guuidea.component.ip.domain.DirTableIndexTest;
+import com.guuidea.component.ip.domain.IPProviderInfo;
+import com.guuidea.component.ip.domain.IpRange;
+import com.guuidea.component.ip.domain.IpRangeIndex;
+import com.guuidea.component.ip.domain.IpTableDelta;
+import com.guuidea.component.ip.domain.IpTableHolder;
+import com.guuidea.component.ip.strategy.DeltaDataStrategy;
+import com.guuidea.component.ip.strategy.impl.ArraySearch;
+
+/**
+ * 增量覆盖查询、批量查询的增量下标及合并后的IP表，与按层逐段比较的结果对照
+ */
+public class IpLookupServiceTest {
+    private static final long MAX_IP = 0xFFFFFFFFL;
+    private IpLookupService service;
+
+    @After
+    public void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    public void testRandomDeltas() throws Exception {
+        Random random = new Random(20200416L);
+        for (int round = 0; round < 8; round++) {
+            // 第0层为全量，之后每层为一次增量，后加载的层优先
+            List<IpRangeIndex> layers = new ArrayList<IpRangeIndex>();
+            layers.add(randomLayer(random, 0, 1 + random.nextInt(500)));
+            QueuedDeltaStrategy strategy = new QueuedDeltaStrategy(layers.get(0));
+            if (service != null) {
+                service.shutdown();
+            }
+            service = new IpLookupService(strategy, new ArraySearch(), Collections.<IPProviderInfo>emptyList());
+            service.setCompactThreshold(random.nextInt(60));
+            service.load();
+            assertSameAsLayers(random, layers);
+            for (int version = 1; version <= 10; version++) {
+                IpRangeIndex layer = randomLayer(random, version, 1 + random.nextInt(20));
+                layers.add(layer);
+                strategy.deltas.add(new IpTableDelta(layer, version));
+                Assert.assertEquals(version, service.refresh().get().getVersion());
+                assertSameAsLayers(random, layers);
+            }
+            service.compact().get();
+            Assert.assertNull(service.getIpTableHolder().getDeltaIndex());
+            assertSameAsLayers(random, layers);
+        }
+    }
+
+    @Test
+    public void testSameVersionNotRepublished() throws Exception {
+        Random random = new Random(20200417L);
+        QueuedDeltaStrategy strategy = new QueuedDeltaStrategy(randomLayer(random, 0, 100));
+        service = new IpLookupService(strategy, new ArraySearch(), Collections.<IPProviderInfo>emptyList());
+        service.load();
+        IpRangeIndex layer = randomLayer(random, 1, 10);
+        strategy.deltas.add(new IpTableDelta(layer, 1));
+        IpTableHolder first = service.refresh().get();
+        // 同一版本号的行再次读到时不重新发布
+        strategy.deltas.add(new IpTableDelta(layer, 1));
+        Assert.assertSame(first, service.refresh().get());
+        strategy.deltas.add(new IpTableDelta(new IpRangeIndex.Builder(0).build(), 1));
+        Assert.assertSame(first, service.refresh().get());
+    }
+
+    private void assertSameAsLayers(Random random, List<IpRangeIndex> layers) {
+        long[] ips = new long[600];
+        for (int i = 0; i < ips.length; i++) {
+            IpRangeIndex layer = layers.get(random.nextInt(layers.size()));
+            if (random.nextInt(4) == 0 || layer.size() == 0) {
+                ips[i] = random.nextLong() & MAX_IP;
+            } else {
+                int slot = random.nextInt(layer.size());
+                long[] candidates = {layer.getStart(slot) - 1, layer.getStart(slot), layer.getEnd(slot), layer.getEnd(slot) + 1};
+                ips[i] = Math.max(0, Math.min(MAX_IP, candidates[random.nextInt(candidates.length)]));
+            }
+        }
+        int[] out = new int[ips.length];
+        IpTableHolder holder = service.search(ips, out);
+        for (int i = 0; i < ips.length; i++) {
+            Integer expected = expectedProvince(layers, ips[i]);
+            IpRange single = service.search(ips[i]);
+            IpRange batch = holder.getIpRange(out[i]);
+            Assert.assertEquals("ip=" + ips[i], expected, single == null ? null : single.getProvinceId());
+            Assert.assertEquals("ip=" + ips[i], expected, batch == null ? null : batch.getProvinceId());
+        }
+    }
+
+    private static Integer expectedProvince(List<IpRangeIndex> layers, long ip) {
+        for (int i = layers.size() - 1; i >= 0; i--) {
+            IpRangeIndex layer = layers.get(i);
+            int slot = DirTableIndexTest.scan(layer, ip);
+            if (slot >= 0) {
+                return layer.getRegions().getProvinceId(layer.getRegionIndex(slot));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 每层的地区互不相同，便于区分命中的是哪一层；增量层只保留约三分之一的IP段
+     */
+    private static IpRangeIndex randomLayer(Random random, int layer, int count) {
+        IpRangeIndex ranges = DirTableIndexTest.randomIndex(random, count);
+        IpRangeIndex.Builder builder = new IpRangeIndex.Builder(ranges.size());
+        int added = 0;
+        for (int i = 0; i < ranges.size(); i++) {
+            // 增量至少包含一段，没有行的增量不会推进版本号
+            if (layer == 0 || random.nextInt(3) == 0 || (added == 0 && i == ranges.size() - 1)) {
+                added++;
+                builder.add(ranges.getStart(i), ranges.getEnd(i), layer * 100000 + i, 0, 0, null, null);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * 全量加载固定的IP表，增量加载依次返回队列中的结果，队列为空时没有变化
+     */
+    private static class QueuedDeltaStrategy implements DeltaDataStrategy {
+        private final IpRangeIndex base;
+        private final List<IpTableDelta> deltas = Collections.synchronizedList(new LinkedList<IpTableDelta>());
+
+        QueuedDeltaStrategy(IpRangeIndex base) {
+            this.base = base;
+        }
+
+        @Override
+        public IpTableHolder load(List<IPProviderInfo> ipProviderInfos) {
+            IpTableHolder holder = new IpTableHolder();
+            holder.setIpRangeIndex(base);
+            return holder;
+        }
+
+        @Override
+        public IpTableDelta loadDelta(List<IPProviderInfo> ipProviderInfos, long sinceVersion) {
+            if (deltas.isEmpty()) {
+                return new IpTableDelta(new IpRangeIndex.Builder(0).build(), sinceVersion);
+            }
+            return deltas.remove(0);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.guuidea.component.ip.domain;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.guuidea.component.ip.strategy.impl.DirTableSearch;
+
+/**
+ * DIR查表索引与逐段比较的结果对照
+ */
+public class DirTableIndexTest {
+    private static final long MAX_IP = 0xFFFFFFFFL;
+
+    @Test
+    public void testRandomTables() {
+        Random random = new Random(20200414L);
+        for (int round = 0; round < 40; round++) {
+            IpRangeIndex index = randomIndex(random, 1 + random.nextInt(3000));
+            for (int strideBits : new int[]{DirTableIndex.MIN_STRIDE_BITS, 12, 16, 20}) {
+                DirTableIndex dirTableIndex = DirTableIndex.build(index, strideBits);
+                assertSameAsScan(index, dirTableIndex, random);
+            }
+        }
+    }
+
+    @Test
+    public void testFullRange() {
+        IpRangeIndex index = new IpRangeIndex.Builder(2)
+                .add(0L, 0x7FFFFFFFL, 1, 0, 0, null, null)
+                .add(0x80000000L, MAX_IP, 2, 0, 0, null, null)
+                .build();
+        DirTableIndex dirTableIndex = DirTableIndex.build(index, 16);
+        Assert.assertEquals(0, dirTableIndex.indexOf(0L));
+        Assert.assertEquals(0, dirTableIndex.indexOf(0x7FFFFFFFL));
+        Assert.assertEquals(1, dirTableIndex.indexOf(0x80000000L));
+        Assert.assertEquals(1, dirTableIndex.indexOf(MAX_IP));
+        Assert.assertEquals(-1, dirTableIndex.indexOf(-1L));
+        Assert.assertEquals(-1, dirTableIndex.indexOf(MAX_IP + 1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testPrepareWithoutIndex() {
+        new DirTableSearch(16).prepare(new IpTableHolder());
+    }
+
+    /**
+     * 段长从单个IP到跨越多个首级块不等，段间随机留空
+     */
+    public static IpRangeIndex randomIndex(Random random, int count) {
+        IpRangeIndex.Builder builder = new IpRangeIndex.Builder(count);
+        long next = random.nextBoolean() ? 0L : random.nextInt(1 << 20);
+        long average = MAX_IP / count;
+        for (int i = 0; i < count && next <= MAX_IP; i++) {
+            long length;
+            switch (random.nextInt(4)) {
+                case 0:
+                    length = 1;
+                    break;
+                case 1:
+                    length = 1 + random.nextInt(256);
+                    break;
+                default:
+                    length = 1 + (long) (random.nextDouble() * average);
+                    break;
+            }
+            long end = Math.min(next + length - 1, MAX_IP);
+            if (i == count - 1 && random.nextBoolean()) {
+                end = MAX_IP;
+            }
+            builder.add(next, end, i, 0, 0, null, null);
+            long gap = random.nextInt(3) == 0 ? 0 : random.nextInt(1 + (int) Math.min(average, Integer.MAX_VALUE - 1));
+            next = end + 1 + gap;
+        }
+        return builder.build();
+    }
+
+    public static int scan(IpRangeIndex index, long ip) {
+        for (int i = 0; i < index.size(); i++) {
+            if (index.getStart(i) <= ip && ip <= index.getEnd(i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void assertSameAsScan(IpRangeIndex index, DirTableIndex dirTableIndex, Random random) {
+        for (int i = 0; i < index.size(); i++) {
+            long start = index.getStart(i);
+            long end = index.getEnd(i);
+            for (long ip : new long[]{start - 1, start, start + 1, (start + end) >>> 1, end - 1, end, end + 1}) {
+                if (ip >= 0 && ip <= MAX_IP) {
+                    Assert.assertEquals("ip=" + ip, scan(index, ip), dirTableIndex.indexOf(ip));
+                }
+            }
+        }
+        for (int i = 0; i < 2000; i++) {
+            long ip = random.nextLong() & MAX_IP;
+            Assert.assertEquals("ip=" + ip, scan(index, ip), dirTableIndex.indexOf(ip));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.guuidea.component.ip.domain;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.guuidea.component.ip.strategy.impl.EytzingerSearch;
+
+/**
+ * Eytzinger布局索引与逐段比较的结果对照
+ */
+public class EytzingerIndexTest {
+    private static final long MAX_IP = 0xFFFFFFFFL;
+
+    @Test
+    public void testRandomTables() {
+        Random random = new Random(20200415L);
+        for (int round = 0; round < 60; round++) {
+            // 覆盖完全二叉树的各种填充程度
+            int count = round < 20 ? round + 1 : 1 + random.nextInt(5000);
+            IpRangeIndex index = DirTableIndexTest.randomIndex(random, count);
+            EytzingerIndex eytzingerIndex = EytzingerIndex.build(index);
+            for (int i = 0; i < index.size(); i++) {
+                long start = index.getStart(i);
+                long end = index.getEnd(i);
+                for (long ip : new long[]{start - 1, start, (start + end) >>> 1, end, end + 1}) {
+                    if (ip >= 0 && ip <= MAX_IP) {
+                        Assert.assertEquals("ip=" + ip, DirTableIndexTest.scan(index, ip), eytzingerIndex.indexOf(ip));
+                    }
+                }
+            }
+            for (int i = 0; i < 2000; i++) {
+                long ip = random.nextLong() & MAX_IP;
+                Assert.assertEquals("ip=" + ip, DirTableIndexTest.scan(index, ip), eytzingerIndex.indexOf(ip));
+            }
+        }
+    }
+
+    @Test
+    public void testOutOfRange() {
+        IpRangeIndex index = new IpRangeIndex.Builder(1).add(0L, MAX_IP, 1, 0, 0, null, null).build();
+        EytzingerIndex eytzingerIndex = EytzingerIndex.build(index);
+        Assert.assertEquals(0, eytzingerIndex.indexOf(0L));
+        Assert.assertEquals(0, eytzingerIndex.indexOf(MAX_IP));
+        Assert.assertEquals(-1, eytzingerIndex.indexOf(-1L));
+        Assert.assertEquals(-1, eytzingerIndex.indexOf(MAX_IP + 1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testPrepareWithoutIndex() {
+        new EytzingerSearch().prepare(new IpTableHolder());
+    }
+}
@@ -0,0 +1,106 @@
+package com.guuidea.component.ip.domain;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 压缩位图与按区间二分查找的结果对照，覆盖满容器、游程容器与位图容器
+ */
+public class IpBitmapTest {
+    private static final long MAX_IP = 0xFFFFFFFFL;
+
+    @Test
+    public void testRandomRanges() {
+        Random random = new Random(20200419L);
+        for (int round = 0; round < 30; round++) {
+            // 平均间距从数个IP到数千万个IP，使各种容器都会出现
+            long spacing = 1L << random.nextInt(26);
+            int count = 1 + random.nextInt(20000);
+            long[] starts = new long[count];
+            long[] ends = new long[count];
+            int size = 0;
+            long next = random.nextInt(4);
+            while (size < count && next <= MAX_IP) {
+                long end = Math.min(MAX_IP, next + (long) (random.nextDouble() * spacing));
+                starts[size] = next;
+                ends[size] = end;
+                size++;
+                next = end + 2 + (long) (random.nextDouble() * spacing);
+            }
+            starts = Arrays.copyOf(starts, size);
+            ends = Arrays.copyOf(ends, size);
+            assertSameAsRanges(starts, ends, random);
+        }
+    }
+
+    @Test
+    public void testDenseBlock() {
+        // 同一个64K块内超过游程上限的零散IP，使用位图容器
+        int count = 10000;
+        long[] starts = new long[count];
+        long[] ends = new long[count];
+        for (int i = 0; i < count; i++) {
+            starts[i] = 0x0A000000L + i * 5L;
+            ends[i] = starts[i] + (i % 3);
+        }
+        assertSameAsRanges(starts, ends, new Random(1L));
+    }
+
+    @Test
+    public void testFullAndEmpty() {
+        IpBitmap all = new IpBitmap.Builder().add(0L, MAX_IP).build();
+        Assert.assertEquals(MAX_IP + 1, all.getCardinality());
+        Assert.assertTrue(all.contains(0L));
+        Assert.assertTrue(all.contains(MAX_IP));
+        Assert.assertFalse(all.contains(-1L));
+        Assert.assertFalse(all.contains(MAX_IP + 1));
+        IpBitmap empty = new IpBitmap.Builder().build();
+        Assert.assertEquals(0L, empty.getCardinality());
+        Assert.assertFalse(empty.contains(0L));
+        Assert.assertFalse(empty.contains(MAX_IP));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOverlap() {
+        new IpBitmap.Builder().add(10L, 20L).add(20L, 30L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDescending() {
+        new IpBitmap.Builder().add(10L, 20L).add(0L, 5L);
+    }
+
+    private static void assertSameAsRanges(long[] starts, long[] ends, Random random) {
+        IpBitmap.Builder builder = new IpBitmap.Builder();
+        long cardinality = 0L;
+        for (int i = 0; i < starts.length; i++) {
+            builder.add(starts[i], ends[i]);
+            cardinality += ends[i] - starts[i] + 1;
+        }
+        IpBitmap bitmap = builder.build();
+        Assert.assertEquals(cardinality, bitmap.getCardinality());
+        for (int i = 0; i < starts.length; i++) {
+            for (long ip : new long[]{starts[i] - 1, starts[i], (starts[i] + ends[i]) >>> 1, ends[i], ends[i] + 1}) {
+                if (ip >= 0 && ip <= MAX_IP) {
+                    Assert.assertEquals("ip=" + ip, inRanges(starts, ends, ip), bitmap.contains(ip));
+                }
+            }
+        }
+        for (int i = 0; i < 20000; i++) {
+            long ip = random.nextLong() & MAX_IP;
+            Assert.assertEquals("ip=" + ip, inRanges(starts, ends, ip), bitmap.contains(ip));
+        }
+    }
+
+    private static boolean inRanges(long[] starts, long[] ends, long ip) {
+        int i = Arrays.binarySearch(starts, ip);
+        if (i >= 0) {
+            return true;
+        }
+        i = -i - 2;
+        return i >= 0 && ip <= ends[i];
+    }
+}
@@ -0,0 +1,56 @@
+package com.guuidea.component.ip.domain;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * IPv6段构建时的排序、合并与校验
+ */
+public class Ipv6RangeIndexTest {
+
+    @Test
+    public void testSortAndCoalesce() {
+        Ipv6RangeIndex index = new Ipv6RangeIndex.Builder(4)
+                .add(2L, 0L, 2L, 10L, 1, 0, 0, null, null)
+                // 低64位进位到高64位时首尾相接
+                .add(1L, -1L, 1L, -1L, 1, 0, 0, null, null)
+                .add(0L, 0L, 1L, -2L, 1, 0, 0, null, null)
+                .add(2L, 11L, 2L, 20L, 2, 0, 0, null, null)
+                .build();
+        Assert.assertEquals(2, index.size());
+        Assert.assertEquals(0L, index.getStartHi(0));
+        Assert.assertEquals(0L, index.getStartLo(0));
+        Assert.assertEquals(2L, index.getEndHi(0));
+        Assert.assertEquals(10L, index.getEndLo(0));
+        Assert.assertEquals(0, index.indexOf(1L, -1L));
+        Assert.assertEquals(1, index.indexOf(2L, 15L));
+        Assert.assertEquals(-1, index.indexOf(2L, 21L));
+        Assert.assertEquals(4, index.getStats().getRowsIn());
+    }
+
+    @Test
+    public void testWithoutCoalesce() {
+        Ipv6RangeIndex index = new Ipv6RangeIndex.Builder(2)
+                .add(0L, 11L, 0L, 20L, 1, 0, 0, null, null)
+                .add(0L, 0L, 0L, 10L, 1, 0, 0, null, null)
+                .coalesce(false)
+                .build();
+        Assert.assertEquals(2, index.size());
+        Assert.assertEquals(0L, index.getStartLo(0));
+        Assert.assertEquals(11L, index.getStartLo(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOverlap() {
+        new Ipv6RangeIndex.Builder(2)
+                .add(0L, 10L, 0L, 20L, 1, 0, 0, null, null)
+                .add(0L, 0L, 0L, 10L, 2, 0, 0, null, null)
+                .build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStartAfterEnd() {
+        // 高64位按无符号比较，-1L大于1L
+        new Ipv6RangeIndex.Builder(1).add(-1L, 0L, 1L, 0L, 1, 0, 0, null, null).build();
+    }
+}
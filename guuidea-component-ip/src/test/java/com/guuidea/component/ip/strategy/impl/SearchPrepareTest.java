@@ -0,0 +1,74 @@
+package com.guuidea.component.ip.strategy.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.guuidea.component.ip.domain.DirTableIndexTest;
+import com.guuidea.component.ip.domain.IpRangeIndex;
+import com.guuidea.component.ip.domain.IpTableHolder;
+import com.guuidea.component.ip.strategy.SearchDataStragtegy;
+import com.guuidea.component.ip.util.IpSnapshotUtil;
+
+/**
+ * 各检索方式在数据源未提供所需数据时启动失败，而不是查询时全部返回null
+ */
+public class SearchPrepareTest {
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("ip-snapshot", ".dat");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBinaryPrepareWithoutIndex() {
+        new BinarySearch().prepare(new IpTableHolder());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testArrayPrepareWithoutIndex() {
+        new ArraySearch().prepare(new IpTableHolder());
+    }
+
+    @Test
+    public void testSnapshotHolder() throws IOException {
+        IpTableHolder source = new IpTableHolder();
+        source.setIpRangeIndex(DirTableIndexTest.randomIndex(new Random(20200402L), 100));
+        IpSnapshotUtil.export(source, file);
+        IpTableHolder holder = new IpTableHolder();
+        holder.setMappedIpTable(IpSnapshotUtil.map(file));
+        for (SearchDataStragtegy strategy : new SearchDataStragtegy[]{new BinarySearch(), new ArraySearch(),
+                new DirTableSearch(16), new EytzingerSearch()}) {
+            try {
+                strategy.prepare(holder);
+                Assert.fail(strategy.getClass().getSimpleName());
+            } catch (IllegalStateException e) {
+                // 预期
+            }
+        }
+        new MappedSearch().prepare(holder);
+    }
+
+    @Test
+    public void testPrepareWithIndex() {
+        IpRangeIndex index = DirTableIndexTest.randomIndex(new Random(20200401L), 100);
+        IpTableHolder holder = new IpTableHolder();
+        holder.setIpRangeIndex(index);
+        new BinarySearch().prepare(holder);
+        new ArraySearch().prepare(holder);
+        long ip = index.getStart(50);
+        Assert.assertEquals(index.getStart(50), new BinarySearch().search(holder, ip).getIpStartNum());
+        Assert.assertEquals(index.getStart(50), new ArraySearch().search(holder, ip).getIpStartNum());
+    }
+}
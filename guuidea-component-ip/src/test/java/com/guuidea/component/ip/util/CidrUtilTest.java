@@ -0,0 +1,102 @@
+package com.guuidea.component.ip.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * CIDR解析与最小覆盖，覆盖结果与按前缀树递归拆分的结果对照
+ */
+public class CidrUtilTest {
+    private static final long MAX_IP = 0xFFFFFFFFL;
+
+    @Test
+    public void testRandomCover() {
+        Random random = new Random(20200418L);
+        for (int i = 0; i < 20000; i++) {
+            long start;
+            long end;
+            switch (random.nextInt(4)) {
+                case 0:
+                    // 短区间
+                    start = random.nextLong() & MAX_IP;
+                    end = Math.min(MAX_IP, start + random.nextInt(1000));
+                    break;
+                case 1:
+                    // 贴近IPv4空间两端
+                    start = random.nextInt(1 << 16);
+                    end = MAX_IP - random.nextInt(1 << 16);
+                    break;
+                default:
+                    long a = random.nextLong() & MAX_IP;
+                    long b = random.nextLong() & MAX_IP;
+                    start = Math.min(a, b);
+                    end = Math.max(a, b);
+                    break;
+            }
+            assertCover(start, end);
+        }
+        assertCover(0L, MAX_IP);
+        assertCover(0L, 0L);
+        assertCover(MAX_IP, MAX_IP);
+    }
+
+    @Test
+    public void testParseRoundTrip() {
+        Random random = new Random(20200419L);
+        long[] out = new long[2];
+        for (int i = 0; i < 10000; i++) {
+            long ip = random.nextLong() & MAX_IP;
+            int prefix = random.nextInt(33);
+            long size = 1L << (32 - prefix);
+            long network = ip & ~(size - 1) & MAX_IP;
+            // 主机位不为0时按网络地址处理
+            Assert.assertTrue(CidrUtil.parse(CidrUtil.format(ip, prefix), out));
+            Assert.assertEquals(network, out[0]);
+            Assert.assertEquals(network + size - 1, out[1]);
+        }
+        Assert.assertTrue(CidrUtil.parse("10.1.2.3", out));
+        Assert.assertEquals(out[0], out[1]);
+    }
+
+    @Test
+    public void testParseInvalid() {
+        long[] out = new long[2];
+        for (String cidr : new String[]{null, "", "/8", "10.0.0.0/", "10.0.0.0/33", "10.0.0.0/008", "10.0.0.0/x",
+                "10.0.0.0/-1", "10.0.0/8", "256.0.0.0/8"}) {
+            Assert.assertFalse(cidr, CidrUtil.parse(cidr, out));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCoverOutOfRange() {
+        CidrUtil.cover(0L, MAX_IP + 1, new ArrayList<String>());
+    }
+
+    static void assertCover(long start, long end) {
+        List<String> actual = new ArrayList<String>();
+        CidrUtil.cover(start, end, actual);
+        List<String> expected = new ArrayList<String>();
+        split(0L, 0, start, end, expected);
+        Assert.assertEquals("[" + start + "-" + end + "]", expected, actual);
+    }
+
+    /**
+     * 从/0开始递归拆分，完全位于区间内的块即为最小覆盖中的一块
+     */
+    static void split(long network, int prefix, long start, long end, List<String> out) {
+        long last = network + (1L << (32 - prefix)) - 1;
+        if (last < start || network > end) {
+            return;
+        }
+        if (start <= network && last <= end) {
+            out.add(CidrUtil.format(network, prefix));
+            return;
+        }
+        split(network, prefix + 1, start, end, out);
+        split(network + (1L << (31 - prefix)), prefix + 1, start, end, out);
+    }
+}
@@ -0,0 +1,100 @@
+package com.guuidea.component.ip.util;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.guuidea.component.ip.domain.DirTableIndexTest;
+import com.guuidea.component.ip.domain.IpRangeIndex;
+
+/**
+ * 排序归并、倍增查找及并行拆分的批量查询与逐段比较的结果对照
+ */
+public class IpBatchSearchUtilTest {
+    private static final long MAX_IP = 0xFFFFFFFFL;
+
+    @Test
+    public void testRandomBatches() {
+        Random random = new Random(20200407L);
+        for (int round = 0; round < 40; round++) {
+            IpRangeIndex index = round == 0 ? new IpRangeIndex.Builder(0).build() : DirTableIndexTest.randomIndex(random, 1 + random.nextInt(2000));
+            // 覆盖逐个查找、排序归并两种路径
+            int count = random.nextBoolean() ? random.nextInt(256) : 256 + random.nextInt(5000);
+            assertBatch(index, randomIps(random, index, count));
+        }
+    }
+
+    @Test
+    public void testParallelBatch() {
+        Random random = new Random(20200408L);
+        // 超过单个并行任务的数量，拆分到多个任务
+        IpRangeIndex index = DirTableIndexTest.randomIndex(random, 40);
+        assertBatch(index, randomIps(random, index, 200000));
+    }
+
+    @Test
+    public void testFloorIndex() {
+        Random random = new Random(20200409L);
+        for (int round = 0; round < 40; round++) {
+            IpRangeIndex index = DirTableIndexTest.randomIndex(random, 1 + random.nextInt(2000));
+            for (int i = 0; i < 500; i++) {
+                long ip = randomIp(random, index);
+                int floor = floor(index, ip);
+                // 起始IP不大于ip的任一下标都可以作为起点
+                int fromIndex = floor < 0 ? 0 : random.nextInt(floor + 1);
+                Assert.assertEquals("ip=" + ip + ", from=" + fromIndex, floor < 0 ? -1 : floor, index.floorIndex(ip, fromIndex));
+                Assert.assertEquals("ip=" + ip + ", from=" + fromIndex, DirTableIndexTest.scan(index, ip), index.indexOf(ip, fromIndex));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testShortOutput() {
+        IpBatchSearchUtil.search(new IpRangeIndex.Builder(0).build(), new long[2], new int[1]);
+    }
+
+    private static void assertBatch(IpRangeIndex index, long[] ips) {
+        int[] out = new int[ips.length];
+        IpBatchSearchUtil.search(index, ips, out);
+        for (int i = 0; i < ips.length; i++) {
+            int expected = ips[i] < 0 || ips[i] > MAX_IP ? -1 : DirTableIndexTest.scan(index, ips[i]);
+            Assert.assertEquals("ip=" + ips[i], expected, out[i]);
+        }
+    }
+
+    /**
+     * 乱序、含重复IP、IP段边界及超出IPv4范围的IP
+     */
+    private static long[] randomIps(Random random, IpRangeIndex index, int count) {
+        long[] ips = new long[count];
+        for (int i = 0; i < count; i++) {
+            int kind = random.nextInt(20);
+            if (kind == 0) {
+                ips[i] = random.nextBoolean() ? -1 - random.nextInt(100) : MAX_IP + 1 + random.nextInt(100);
+            } else if (kind == 1 && i > 0) {
+                ips[i] = ips[random.nextInt(i)];
+            } else {
+                ips[i] = randomIp(random, index);
+            }
+        }
+        return ips;
+    }
+
+    private static long randomIp(Random random, IpRangeIndex index) {
+        if (index.size() == 0 || random.nextBoolean()) {
+            return random.nextLong() & MAX_IP;
+        }
+        int slot = random.nextInt(index.size());
+        long[] candidates = {index.getStart(slot) - 1, index.getStart(slot), index.getEnd(slot), index.getEnd(slot) + 1};
+        return Math.max(0, Math.min(MAX_IP, candidates[random.nextInt(candidates.length)]));
+    }
+
+    private static int floor(IpRangeIndex index, long ip) {
+        int floor = -1;
+        for (int i = 0; i < index.size() && index.getStart(i) <= ip; i++) {
+            floor = i;
+        }
+        return floor;
+    }
+}
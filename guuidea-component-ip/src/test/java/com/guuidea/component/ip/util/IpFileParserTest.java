@@ -0,0 +1,132 @@
+package com.guuidea.component.ip.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.guuidea.component.ip.domain.IpRange;
+import com.guuidea.component.ip.domain.IpRangeIndex;
+
+/**
+ * IP段文件解析，包括从0.0.0.0开始的行及跨越分块边界的行
+ */
+public class IpFileParserTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("ip-file-parser", ".csv");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testZeroAddress() throws IOException {
+        write("start,end,province,city,country,name,code\r\n"
+                + "0.0.0.0,0.255.255.255,-1,-1,-1,保留地址,\r\n"
+                + "\"1.0.0.0\",\"1.0.0.255\",1,2,86,中国,CN\r\n"
+                + "16777472,16777727,3,,86,中国,CN\n");
+        IpRangeIndex index = new IpFileParser(',').parse(file);
+        Assert.assertEquals(3, index.size());
+        Assert.assertEquals(0L, index.getStart(0));
+        Assert.assertEquals(0x00FFFFFFL, index.getEnd(0));
+        Assert.assertEquals("保留地址", index.get(0).getCountryName());
+        Assert.assertNull(index.get(0).getCountryCode());
+        IpRange ipRange = index.get(index.indexOf(0x01000001L));
+        Assert.assertEquals(1, ipRange.getProvinceId());
+        Assert.assertEquals("CN", ipRange.getCountryCode());
+        Assert.assertEquals(-1, index.get(2).getCityId());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidIp() throws IOException {
+        write("1.0.0.0,1.0.0.256,1,2,86\n");
+        new IpFileParser(',').parse(file);
+    }
+
+    /**
+     * 行长随机，分块边界落在行中间
+     */
+    @Test
+    public void testRecordsAcrossChunks() throws IOException {
+        Random random = new Random(13L);
+        StringBuilder content = new StringBuilder();
+        int rows = 0;
+        long next = 0L;
+        while (content.length() < (3 << 20) + 12345) {
+            long end = next + random.nextInt(200);
+            content.append(rows % 2 == 0 ? ip(next) : String.valueOf(next)).append(',')
+                    .append(ip(end)).append(',').append(rows).append(',').append(rows % 7).append(',').append(86)
+                    .append(",\"").append(name(random)).append("\",CN").append(rows % 3 == 0 ? "\r\n" : "\n");
+            next = end + 1 + random.nextInt(3);
+            rows++;
+        }
+        write(content.toString());
+        assertRows(new IpFileParser(',').parse(file), rows);
+    }
+
+    /**
+     * 定长行且文件大小为1MB的整数倍，分块边界恰好落在行首
+     */
+    @Test
+    public void testChunkBoundaryAtLineStart() throws IOException {
+        int lineLength = 64;
+        int rows = (3 << 20) / lineLength;
+        StringBuilder content = new StringBuilder(rows * lineLength);
+        for (int i = 0; i < rows; i++) {
+            int from = content.length();
+            content.append(ip(i * 16L)).append(',').append(ip(i * 16L + 15)).append(',').append(i).append(",0,86,");
+            while (content.length() - from < lineLength - 1) {
+                content.append(' ');
+            }
+            content.append('\n');
+        }
+        write(content.toString());
+        Assert.assertEquals(3 << 20, file.length());
+        assertRows(new IpFileParser(',').parse(file), rows);
+    }
+
+    private static void assertRows(IpRangeIndex index, int rows) {
+        // 省份ID各不相同，相邻IP段不会被合并
+        Assert.assertEquals(rows, index.size());
+        for (int i = 0; i < rows; i++) {
+            Assert.assertEquals(i, index.get(i).getProvinceId());
+            if (i > 0) {
+                Assert.assertTrue(index.getStart(i) > index.getEnd(i - 1));
+            }
+        }
+    }
+
+    private static String ip(long value) {
+        return (value >>> 24) + "." + ((value >>> 16) & 0xFF) + "." + ((value >>> 8) & 0xFF) + "." + (value & 0xFF);
+    }
+
+    private static String name(Random random) {
+        StringBuilder name = new StringBuilder();
+        for (int i = random.nextInt(30); i >= 0; i--) {
+            name.append(random.nextBoolean() ? '省' : 'x');
+        }
+        return name.toString();
+    }
+
+    private void write(String content) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes(UTF_8));
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.guuidea.component.ip.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.guuidea.component.ip.domain.DirTableIndexTest;
+import com.guuidea.component.ip.domain.IpRangeIndex;
+import com.guuidea.component.ip.domain.RegionDictionary;
+
+/**
+ * 区间查询、地区查询及CIDR覆盖与逐段比较的结果对照
+ */
+public class IpRangeQueryUtilTest {
+    private static final long MAX_IP = 0xFFFFFFFFL;
+
+    @Test
+    public void testOverlapping() {
+        Random random = new Random(20200420L);
+        for (int round = 0; round < 40; round++) {
+            IpRangeIndex index = round == 0 ? new IpRangeIndex.Builder(0).build() : randomIndex(random, 1 + random.nextInt(1000));
+            for (int i = 0; i < 300; i++) {
+                long from = randomIp(random, index);
+                long to = random.nextInt(10) == 0 ? from - 1 - random.nextInt(10) : randomIp(random, index);
+                if (random.nextBoolean() && to < from) {
+                    long swap = from;
+                    from = to;
+                    to = swap;
+                }
+                int[] expected = scanOverlapping(index, from, to);
+                Assert.assertArrayEquals("[" + from + "-" + to + "]", expected, IpRangeQueryUtil.overlapping(index, from, to));
+                Assert.assertArrayEquals("[" + from + "-" + to + "]", scanRegions(index, expected),
+                        IpRangeQueryUtil.regionsOverlapping(index, from, to));
+            }
+        }
+    }
+
+    @Test
+    public void testSlotsByRegion() {
+        Random random = new Random(20200421L);
+        for (int round = 0; round < 20; round++) {
+            IpRangeIndex index = randomIndex(random, 1 + random.nextInt(1000));
+            RegionDictionary regions = index.getRegions();
+            for (int id = -1; id < 8; id++) {
+                List<Integer> province = new ArrayList<Integer>();
+                List<Integer> city = new ArrayList<Integer>();
+                List<Integer> country = new ArrayList<Integer>();
+                for (int i = 0; i < index.size(); i++) {
+                    int region = index.getRegionIndex(i);
+                    if (regions.getProvinceId(region) == id) {
+                        province.add(i);
+                    }
+                    if (regions.getCityId(region) == id) {
+                        city.add(i);
+                    }
+                    if (regions.getCountryId(region) == id) {
+                        country.add(i);
+                    }
+                }
+                Assert.assertArrayEquals(toArray(province), IpRangeQueryUtil.slotsByProvince(index, id));
+                Assert.assertArrayEquals(toArray(city), IpRangeQueryUtil.slotsByCity(index, id));
+                Assert.assertArrayEquals(toArray(country), IpRangeQueryUtil.slotsByCountry(index, id));
+            }
+        }
+    }
+
+    @Test
+    public void testToCidrs() {
+        Random random = new Random(20200422L);
+        for (int round = 0; round < 40; round++) {
+            IpRangeIndex index = randomIndex(random, 1 + random.nextInt(500));
+            int[] slots = IpRangeQueryUtil.slotsByProvince(index, random.nextInt(4));
+            long from = random.nextBoolean() ? 0L : randomIp(random, index);
+            long to = random.nextBoolean() ? MAX_IP : randomIp(random, index);
+            List<String> expected = new ArrayList<String>();
+            // 逐段裁剪后合并首尾相接的区间，再按前缀树拆分
+            long start = -1L;
+            long end = -1L;
+            for (int slot : slots) {
+                long slotStart = Math.max(index.getStart(slot), from);
+                long slotEnd = Math.min(index.getEnd(slot), to);
+                if (slotStart > slotEnd) {
+                    continue;
+                }
+                if (start >= 0 && end + 1 != slotStart) {
+                    CidrUtilTest.split(0L, 0, start, end, expected);
+                    start = -1L;
+                }
+                if (start < 0) {
+                    start = slotStart;
+                }
+                end = slotEnd;
+            }
+            if (start >= 0) {
+                CidrUtilTest.split(0L, 0, start, end, expected);
+            }
+            Assert.assertEquals(expected, IpRangeQueryUtil.toCidrs(index, slots, from, to));
+            if (from == 0L && to == MAX_IP) {
+                Assert.assertEquals(expected, IpRangeQueryUtil.toCidrs(index, slots));
+            }
+        }
+    }
+
+    /**
+     * 地区取自少量省、市、国家的组合，使同一属性值对应多个地区
+     */
+    private static IpRangeIndex randomIndex(Random random, int count) {
+        IpRangeIndex ranges = DirTableIndexTest.randomIndex(random, count);
+        IpRangeIndex.Builder builder = new IpRangeIndex.Builder(ranges.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            builder.add(ranges.getStart(i), ranges.getEnd(i), random.nextInt(5) - 1, random.nextInt(5) - 1, random.nextInt(3), null, null);
+        }
+        return builder.build();
+    }
+
+    private static long randomIp(Random random, IpRangeIndex index) {
+        if (index.size() == 0 || random.nextInt(3) == 0) {
+            return random.nextLong() & MAX_IP;
+        }
+        int slot = random.nextInt(index.size());
+        long[] candidates = {index.getStart(slot) - 1, index.getStart(slot), index.getEnd(slot), index.getEnd(slot) + 1};
+        return Math.max(0, Math.min(MAX_IP, candidates[random.nextInt(candidates.length)]));
+    }
+
+    private static int[] scanOverlapping(IpRangeIndex index, long from, long to) {
+        List<Integer> slots = new ArrayList<Integer>();
+        // from大于to时为空区间
+        for (int i = 0; i < index.size() && from <= to; i++) {
+            if (index.getStart(i) <= to && index.getEnd(i) >= from) {
+                slots.add(i);
+            }
+        }
+        return toArray(slots);
+    }
+
+    private static int[] scanRegions(IpRangeIndex index, int[] slots) {
+        List<Integer> regions = new ArrayList<Integer>();
+        for (int slot : slots) {
+            if (!regions.contains(index.getRegionIndex(slot))) {
+                regions.add(index.getRegionIndex(slot));
+            }
+        }
+        int[] result = toArray(regions);
+        Arrays.sort(result);
+        return result;
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] result = new int[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+}
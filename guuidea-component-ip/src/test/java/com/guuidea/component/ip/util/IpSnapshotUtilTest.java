@@ -0,0 +1,162 @@
+package com.guuidea.component.ip.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.guuidea.component.ip.domain.DirTableIndexTest;
+import com.guuidea.component.ip.domain.IpRange;
+import com.guuidea.component.ip.domain.IpRangeIndex;
+import com.guuidea.component.ip.domain.IpTableHolder;
+import com.guuidea.component.ip.domain.MappedIpTable;
+
+/**
+ * 快照导出后映射，与原索引逐段及逐IP对照；损坏的快照在映射时报错
+ */
+public class IpSnapshotUtilTest {
+    private static final long MAX_IP = 0xFFFFFFFFL;
+    private static final String[] NAMES = {null, "", "中国", "United States"};
+    private static final String[] CODES = {null, "CN", "US"};
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("ip-snapshot", ".dat");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Random random = new Random(20200402L);
+        for (int round = 0; round < 30; round++) {
+            IpRangeIndex index = round == 0 ? new IpRangeIndex.Builder(0).build() : randomIndex(random, 1 + random.nextInt(3000));
+            MappedIpTable table = exportAndMap(index);
+            Assert.assertEquals(index.size(), table.size());
+            for (int i = 0; i < index.size(); i++) {
+                assertSameRange(index.get(i), table.get(i));
+                long start = index.getStart(i);
+                long end = index.getEnd(i);
+                for (long ip : new long[]{start - 1, start, (start + end) >>> 1, end, end + 1}) {
+                    if (ip >= 0 && ip <= MAX_IP) {
+                        Assert.assertEquals("ip=" + ip, DirTableIndexTest.scan(index, ip), table.indexOf(ip));
+                    }
+                }
+            }
+            for (int i = 0; i < 2000; i++) {
+                long ip = random.nextLong() & MAX_IP;
+                Assert.assertEquals("ip=" + ip, DirTableIndexTest.scan(index, ip), table.indexOf(ip));
+            }
+            Assert.assertEquals(-1, table.indexOf(-1L));
+            Assert.assertEquals(-1, table.indexOf(MAX_IP + 1));
+        }
+    }
+
+    @Test
+    public void testCorruptRanges() throws IOException {
+        IpRangeIndex index = new IpRangeIndex.Builder(3)
+                .add(100L, 199L, 1, 0, 0, null, null)
+                .add(300L, 399L, 2, 0, 0, null, null)
+                .add(0xF0000000L, MAX_IP, 3, 0, 0, null, null)
+                .build();
+        int size = index.size();
+        // 起始IP大于结束IP、与上一段重叠、乱序
+        int[][] patches = {{16 + 4, 400}, {16 + 4, 199}, {16 + 4, 50}, {16 + size * 4, 99}};
+        for (int[] patch : patches) {
+            exportAndMap(index);
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.seek(patch[0]);
+                raf.writeInt(patch[1]);
+            } finally {
+                raf.close();
+            }
+            try {
+                IpSnapshotUtil.map(file);
+                Assert.fail("offset=" + patch[0] + ", value=" + patch[1]);
+            } catch (IOException e) {
+                // 预期
+            }
+        }
+    }
+
+    @Test
+    public void testTruncated() throws IOException {
+        exportAndMap(randomIndex(new Random(1L), 50));
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(raf.length() - 3);
+        } finally {
+            raf.close();
+        }
+        try {
+            IpSnapshotUtil.map(file);
+            Assert.fail();
+        } catch (IOException e) {
+            // 预期
+        }
+    }
+
+    @Test
+    public void testFailedExportRemovesTemporaryFile() throws IOException {
+        // 目标为非空目录时替换失败
+        File directory = new File(file.getParentFile(), file.getName() + ".dir");
+        File child = new File(directory, "child");
+        Assert.assertTrue(directory.mkdir());
+        Assert.assertTrue(child.createNewFile());
+        try {
+            IpTableHolder holder = new IpTableHolder();
+            holder.setIpRangeIndex(randomIndex(new Random(2L), 10));
+            try {
+                IpSnapshotUtil.export(holder, directory);
+                Assert.fail();
+            } catch (IOException e) {
+                // 预期
+            }
+            Assert.assertFalse(new File(directory.getParentFile(), directory.getName() + ".tmp").exists());
+        } finally {
+            child.delete();
+            directory.delete();
+        }
+    }
+
+    private MappedIpTable exportAndMap(IpRangeIndex index) throws IOException {
+        IpTableHolder holder = new IpTableHolder();
+        holder.setIpRangeIndex(index);
+        IpSnapshotUtil.export(holder, file);
+        Assert.assertFalse(new File(file.getParentFile(), file.getName() + ".tmp").exists());
+        return IpSnapshotUtil.map(file);
+    }
+
+    /**
+     * 在随机IP段上附加随机地区属性，覆盖null、空串及多字节字符
+     */
+    private static IpRangeIndex randomIndex(Random random, int count) {
+        IpRangeIndex ranges = DirTableIndexTest.randomIndex(random, count);
+        IpRangeIndex.Builder builder = new IpRangeIndex.Builder(ranges.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            builder.add(ranges.getStart(i), ranges.getEnd(i), random.nextInt(40) - 1, random.nextInt(5), random.nextInt(3),
+                    NAMES[random.nextInt(NAMES.length)], CODES[random.nextInt(CODES.length)]);
+        }
+        return builder.build();
+    }
+
+    private static void assertSameRange(IpRange expected, IpRange actual) {
+        Assert.assertEquals(expected.getIpStartNum(), actual.getIpStartNum());
+        Assert.assertEquals(expected.getIpEndNum(), actual.getIpEndNum());
+        Assert.assertEquals(expected.getProvinceId(), actual.getProvinceId());
+        Assert.assertEquals(expected.getCityId(), actual.getCityId());
+        Assert.assertEquals(expected.getCountryId(), actual.getCountryId());
+        Assert.assertEquals(expected.getCountryName(), actual.getCountryName());
+        Assert.assertEquals(expected.getCountryCode(), actual.getCountryCode());
+    }
+}
@@ -0,0 +1,125 @@
+package com.guuidea.component.ip.util;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * IPv6解析与RFC 5952格式输出
+ */
+public class IpUtilTest {
+
+    /**
+     * 文本、高64位、低64位
+     */
+    private static final Object[][] VALID = {
+            {"::", 0L, 0L},
+            {"::1", 0L, 1L},
+            {"1::", 0x0001000000000000L, 0L},
+            {"1::8", 0x0001000000000000L, 8L},
+            {"1:2:3:4:5:6:7:8", 0x0001000200030004L, 0x0005000600070008L},
+            {"1:2:3:4:5:6:7::", 0x0001000200030004L, 0x0005000600070000L},
+            {"::2:3:4:5:6:7:8", 0x0000000200030004L, 0x0005000600070008L},
+            {"2001:db8::ff00:42:8329", 0x20010db800000000L, 0x0000ff0000428329L},
+            {"2001:0DB8:0000:0000:0000:0000:0000:0001", 0x20010db800000000L, 1L},
+            {"ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff", -1L, -1L},
+            {"::ffff:1.2.3.4", 0L, 0x0000ffff01020304L},
+            {"::ffff:0.0.0.0", 0L, 0x0000ffff00000000L},
+            {"::1.2.3.4", 0L, 0x01020304L},
+            {"1:2:3:4:5:6:1.2.3.4", 0x0001000200030004L, 0x0005000601020304L},
+            {"64:ff9b::255.255.255.255", 0x0064ff9b00000000L, 0xFFFFFFFFL},
+    };
+
+    private static final String[] INVALID = {
+            "",
+            ":",
+            ":::",
+            ":1::",
+            "1::2:",
+            "1:::2",
+            "1::2::3",
+            "12345::",
+            "::12345",
+            "g::",
+            "1:2:3:4:5:6:7",
+            "1:2:3:4:5:6:7:8:9",
+            "1:2:3:4:5:6:7:8::",
+            "1:2:3:4:5:6:7:1.2.3.4",
+            "::1.2.3",
+            "::256.1.1.1",
+            "::1.2.3.4:5",
+            "1.2.3.4::",
+            ":: 1",
+            "fe80::1%eth0",
+    };
+
+    /**
+     * 高64位、低64位、RFC 5952格式
+     */
+    private static final Object[][] FORMAT = {
+            {0L, 0L, "::"},
+            {0L, 1L, "::1"},
+            {0x0001000000000000L, 0L, "1::"},
+            {0x20010db800000000L, 1L, "2001:db8::1"},
+            {0x20010db800000000L, 0x0001000000000001L, "2001:db8::1:0:0:1"},
+            {0x20010db800000001L, 0x0001000100010001L, "2001:db8:0:1:1:1:1:1"},
+            {0x20010db800000000L, 0x0000000000020001L, "2001:db8::2:1"},
+            {0x0000000000010000L, 0x0000000000010000L, "0:0:1::1:0"},
+            {0xABCD000000000000L, 0x00000000000000EFL, "abcd::ef"},
+            {0L, 0x0000ffff01020304L, "::ffff:1.2.3.4"},
+            {-1L, -1L, "ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff"},
+    };
+
+    @Test
+    public void testParseIpv6() {
+        long[] out = new long[2];
+        for (Object[] row : VALID) {
+            String ip = (String) row[0];
+            Assert.assertTrue(ip, IpUtil.parseIpv6(ip, out));
+            Assert.assertEquals(ip, row[1], out[0]);
+            Assert.assertEquals(ip, row[2], out[1]);
+        }
+    }
+
+    @Test
+    public void testParseInvalidIpv6() {
+        long[] out = new long[2];
+        for (String ip : INVALID) {
+            Assert.assertFalse(ip, IpUtil.parseIpv6(ip, out));
+        }
+        Assert.assertFalse(IpUtil.parseIpv6(null, out));
+    }
+
+    @Test
+    public void testFormatIpv6() {
+        for (Object[] row : FORMAT) {
+            Assert.assertEquals(row[2], IpUtil.formatIpv6((Long) row[0], (Long) row[1]));
+        }
+    }
+
+    @Test
+    public void testRoundTrip() {
+        Random random = new Random(5952L);
+        long[] out = new long[2];
+        for (int i = 0; i < 10000; i++) {
+            // 随机清零部分分组，覆盖各种"::"位置
+            long hi = random.nextLong() & randomGroupMask(random);
+            long lo = random.nextLong() & randomGroupMask(random);
+            String text = IpUtil.formatIpv6(hi, lo);
+            Assert.assertTrue(text, IpUtil.parseIpv6(text, out));
+            Assert.assertEquals(text, hi, out[0]);
+            Assert.assertEquals(text, lo, out[1]);
+        }
+    }
+
+    private static long randomGroupMask(Random random) {
+        long mask = 0L;
+        for (int group = 0; group < 4; group++) {
+            if (random.nextInt(3) != 0) {
+                mask |= 0xFFFFL << (group * 16);
+            }
+        }
+        return mask;
+    }
+}
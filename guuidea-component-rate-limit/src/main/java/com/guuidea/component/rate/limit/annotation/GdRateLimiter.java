@@ -15,4 +15,58 @@ public @interface GdRateLimiter {
 	//以固定数值往令牌桶添加令牌
 	double number() default 1000.0;
 
+	//限流器实现，默认为Guava RateLimiter，仅algorithm为SMOOTH时生效
+	Engine engine() default Engine.GUAVA;
+
+	//限流算法，默认为平滑令牌桶
+	Algorithm algorithm() default Algorithm.SMOOTH;
+
+	//TOKEN_BUCKET/GCRA允许的突发请求数，0时TOKEN_BUCKET为1秒的令牌数，GCRA为1(请求严格按间隔放行)
+	int burst() default 0;
+
+	//FIXED_WINDOW/SLIDING_WINDOW的窗口长度(毫秒)，每个窗口的请求数为number * windowMillis / 1000
+	long windowMillis() default 1000;
+
+	//限流key表达式，为空时整个方法共用一个令牌桶，否则每个key各自一个令牌桶：header:名称、ip、arg:下标[.属性]
+	String key() default "";
+
+	//按key限流时最多保存的key数量，超过后淘汰最久未访问的key
+	long maxKeys() default 100000;
+
+	//按key限流时key在该秒数内未访问则移除
+	long keyExpireSeconds() default 600;
+
+	enum Engine {
+		/**
+		 * Guava RateLimiter，获取许可时加锁
+		 */
+		GUAVA,
+		/**
+		 * 基于单个AtomicLong的无锁令牌桶，桶容量为1秒的令牌数，适用于多核下的热点接口
+		 */
+		CAS
+	}
+
+	enum Algorithm {
+		/**
+		 * 平滑令牌桶，实现由engine决定
+		 */
+		SMOOTH,
+		/**
+		 * 固定窗口计数，窗口边界处最多放行两倍请求
+		 */
+		FIXED_WINDOW,
+		/**
+		 * 滑动窗口计数，按上一窗口的重叠比例加权估算，每个窗口最多1048575个请求
+		 */
+		SLIDING_WINDOW,
+		/**
+		 * GCRA，按1/number的间隔放行，允许burst个请求的突发
+		 */
+		GCRA,
+		/**
+		 * 令牌桶，每秒产生number个令牌，桶容量为burst
+		 */
+		TOKEN_BUCKET
+	}
 }
@@ -2,6 +2,7 @@ package com.guuidea.component.rate.limit.aop;
 
 import javax.annotation.PostConstruct;
 
+import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -14,13 +15,22 @@ import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
 import com.alibaba.fastjson.JSON;
-import com.google.common.util.concurrent.RateLimiter;
 import com.guuidea.component.rate.limit.annotation.GdRateLimiter;
+import com.guuidea.component.rate.limit.key.KeyExpression;
+import com.guuidea.component.rate.limit.limiter.CasTokenBucket;
+import com.guuidea.component.rate.limit.limiter.FixedWindowLimiter;
+import com.guuidea.component.rate.limit.limiter.GuavaLimiter;
+import com.guuidea.component.rate.limit.limiter.KeyedLimiter;
+import com.guuidea.component.rate.limit.limiter.Limiter;
+import com.guuidea.component.rate.limit.limiter.LimiterFactory;
+import com.guuidea.component.rate.limit.limiter.SlidingWindowLimiter;
 
 /**
  * @Author: zhangsongyang
@@ -28,41 +38,128 @@ import com.guuidea.component.rate.limit.annotation.GdRateLimiter;
  */
 @Component
 @Aspect
-public class RateLimitInvoker {
+public class RateLimitInvoker implements BeanPostProcessor {
 
     @Value("${rate.limit.path:}")
     private String rateLimitPath ;
 
+    /**
+     * 应用前的可信反向代理数量，key为ip时据此从X-Forwarded-For中取客户端IP，为0时取连接的对端地址
+     */
+    @Value("${rate.limit.trusted-proxies:0}")
+    private int trustedProxies;
+
     private static final Logger logger = LoggerFactory.getLogger(RateLimitInvoker.class);
 
     private Map<String,String> pathMap = new HashMap<String, String>();
 
     /**
-     * 令牌桶，key:类名.方法  value：QPS的值
+     * 令牌桶，key:目标类和被拦截的方法  value：该方法的令牌桶；重载方法各自独立，继承同一注解方法的子类也各自独立
      */
-    private ConcurrentMap<String, RateLimiter> limitMap = new ConcurrentHashMap();
+    private final ConcurrentMap<MethodKey, MethodLimiter> limitMap = new ConcurrentHashMap<MethodKey, MethodLimiter>();
 
     @Around("@annotation(gdRateLimiter)")
     public Object injectLimit(final ProceedingJoinPoint point, GdRateLimiter gdRateLimiter) throws Throwable {
-        double num = gdRateLimiter.number();
-        //类名和方法名作为key，RateLimiter作为值，1秒中QPS限制为number
-        String keyName = getMethod(point);
-        RateLimiter limiter = null;
-        if(!limitMap.containsKey(keyName)){
-            //创建令牌桶
-            double number = getNumber(num,keyName);
-            limiter = RateLimiter.create(number);
-            limitMap.put(keyName,limiter);
-            logger.info("请求:{},创建令牌桶容量:{},成功.",keyName,number);
+        Method method = getMethod(point);
+        MethodKey methodKey = new MethodKey(point.getTarget().getClass(), method);
+        MethodLimiter limiter = limitMap.get(methodKey);
+        if (limiter == null) {
+            //启动时未扫描到的方法(如通过接口代理调用)在首次调用时创建
+            limiter = createLimiter(methodKey, gdRateLimiter);
         }
-        limiter = limitMap.get(keyName);
-        if(!limiter.tryAcquire()){
-            //logger.info("请求:{}过于频繁",keyName);
+        if(!limiter.tryAcquire(point)){
+            //logger.info("请求:{}过于频繁",method);
             return "fail";
         }
         return point.proceed();
     }
 
+    /**
+     * 启动时为bean中每个被注解的方法(包括继承的方法)按bean的类创建令牌桶，配置错误(如窗口请求数超出上限、key表达式无效)时启动失败，而不是在首次调用时才报错
+     */
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+        for (Class<?> type = bean.getClass(); type != null && type != Object.class; type = type.getSuperclass()) {
+            for (Method method : type.getDeclaredMethods()) {
+                GdRateLimiter gdRateLimiter = method.getAnnotation(GdRateLimiter.class);
+                if (gdRateLimiter != null) {
+                    MethodKey methodKey = new MethodKey(bean.getClass(), method);
+                    if (!limitMap.containsKey(methodKey)) {
+                        createLimiter(methodKey, gdRateLimiter);
+                    }
+                }
+            }
+        }
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        return bean;
+    }
+
+    /**
+     * 每个类的每个方法只创建一次令牌桶，并发创建时只保留先放入的一个
+     * @param methodKey 目标类和方法，类名和方法名作为自定义容量的key
+     * @throws IllegalStateException 限流配置错误
+     */
+    private MethodLimiter createLimiter(MethodKey methodKey, final GdRateLimiter gdRateLimiter) {
+        String keyName = methodKey.targetClass.getName() + "." + methodKey.method.getName();
+        //1秒中QPS限制为number
+        final double number = getNumber(gdRateLimiter.number(), keyName);
+        MethodLimiter limiter;
+        try {
+            //按key限流时同样先创建一个限流器，校验窗口请求数等配置
+            Limiter methodLimiter = newLimiter(gdRateLimiter, number);
+            if (StringUtils.isEmpty(gdRateLimiter.key())) {
+                limiter = new MethodLimiter(methodLimiter, null, null);
+            } else {
+                KeyedLimiter keyedLimiter = new KeyedLimiter(new LimiterFactory() {
+                    @Override
+                    public Limiter create() {
+                        return newLimiter(gdRateLimiter, number);
+                    }
+                }, gdRateLimiter.maxKeys(), gdRateLimiter.keyExpireSeconds());
+                limiter = new MethodLimiter(null, KeyExpression.parse(gdRateLimiter.key(), trustedProxies), keyedLimiter);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("限流配置错误 [" + keyName + "].", e);
+        }
+        MethodLimiter existing = limitMap.putIfAbsent(methodKey, limiter);
+        if (existing != null) {
+            return existing;
+        }
+        logger.info("请求:{},创建令牌桶容量:{},成功.",keyName,number);
+        return limiter;
+    }
+
+    private Limiter newLimiter(GdRateLimiter gdRateLimiter, double number) {
+        switch (gdRateLimiter.algorithm()) {
+            case FIXED_WINDOW:
+                return new FixedWindowLimiter(windowLimit(gdRateLimiter, number), gdRateLimiter.windowMillis());
+            case SLIDING_WINDOW:
+                return new SlidingWindowLimiter(windowLimit(gdRateLimiter, number), gdRateLimiter.windowMillis());
+            case GCRA:
+                //GCRA与令牌桶是同一算法(虚拟调度)，默认不允许突发
+                return new CasTokenBucket(number, gdRateLimiter.burst() > 0 ? gdRateLimiter.burst() : 1);
+            case TOKEN_BUCKET:
+                return new CasTokenBucket(number, gdRateLimiter.burst() > 0 ? gdRateLimiter.burst() : oneSecond(number));
+            default:
+                if (gdRateLimiter.engine() == GdRateLimiter.Engine.CAS) {
+                    return new CasTokenBucket(number, oneSecond(number));
+                }
+                return new GuavaLimiter(number);
+        }
+    }
+
+    private static int oneSecond(double number) {
+        return (int) Math.max(1, Math.ceil(number));
+    }
+
+    private static long windowLimit(GdRateLimiter gdRateLimiter, double number) {
+        return Math.max(1, Math.round(number * gdRateLimiter.windowMillis() / 1000));
+    }
+
     private double getNumber(double number, String keyName){
         try {
             double value = pathMap.get(keyName) == null ? number : Double.valueOf((String)pathMap.get(keyName));
@@ -83,15 +180,64 @@ public class RateLimitInvoker {
         }
     }
 
-    private String getMethod(ProceedingJoinPoint point) {
+    /**
+     * 一个方法的限流器，按key限流时每个key一个令牌桶，取不到key的请求共用一个令牌桶
+     */
+    private static class MethodLimiter {
+        private final Limiter limiter;
+        private final KeyExpression keyExpression;
+        private final KeyedLimiter keyedLimiter;
+
+        MethodLimiter(Limiter limiter, KeyExpression keyExpression, KeyedLimiter keyedLimiter) {
+            this.limiter = limiter;
+            this.keyExpression = keyExpression;
+            this.keyedLimiter = keyedLimiter;
+        }
+
+        boolean tryAcquire(ProceedingJoinPoint point) {
+            if (keyExpression == null) {
+                return limiter.tryAcquire();
+            }
+            String key = keyExpression.resolve(point.getArgs());
+            return keyedLimiter.tryAcquire(key == null ? "" : key);
+        }
+    }
+
+    /**
+     * 目标类和方法，父类中被注解的方法在每个子类中各有一个令牌桶
+     */
+    private static final class MethodKey {
+        private final Class<?> targetClass;
+        private final Method method;
+
+        MethodKey(Class<?> targetClass, Method method) {
+            this.targetClass = targetClass;
+            this.method = method;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MethodKey)) {
+                return false;
+            }
+            MethodKey other = (MethodKey) o;
+            return targetClass == other.targetClass && method.equals(other.method);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * targetClass.hashCode() + method.hashCode();
+        }
+    }
+
+    private Method getMethod(ProceedingJoinPoint point) {
         Signature sig = point.getSignature();
-        MethodSignature msig = null;
         if (!(sig instanceof MethodSignature)) {
             throw new IllegalArgumentException("该注解只能用于方法");
         }
-        msig = (MethodSignature) sig;
-        String className = point.getTarget().getClass().getName();
-        //Method currentMethod = target.getClass().getMethod(msig.getName(), msig.getParameterTypes());
-        return className+"."+msig.getName();
+        return ((MethodSignature) sig).getMethod();
     }
 }
@@ -0,0 +1,255 @@
+package com.guuidea.component.rate.limit.key;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * 限流key表达式，在创建令牌桶时解析一次，每次调用从当前请求或方法参数中取值：
+ * <ul>
+ *     <li>header:名称 - 当前HTTP请求的请求头</li>
+ *     <li>ip - 客户端IP，默认取连接的对端地址；配置了可信代理数量N时取X-Forwarded-For从右数第N个地址，左侧可由客户端伪造的地址不使用</li>
+ *     <li>arg:下标 - 方法参数，如arg:0</li>
+ *     <li>arg:下标.属性.属性 - 方法参数的属性，依次通过getter、字段或Map的key获取，如arg:0.user.id</li>
+ * </ul>
+ */
+public abstract class KeyExpression {
+    private static final String HEADER = "header:";
+    private static final String IP = "ip";
+    private static final String ARG = "arg:";
+
+    /**
+     * 取出本次调用的key
+     * @param args 方法参数
+     * @return 取不到时返回null
+     */
+    public abstract String resolve(Object[] args);
+
+    /**
+     * 解析表达式，ip取连接的对端地址，不信任X-Forwarded-For
+     * @param expression
+     * @return
+     * @throws IllegalArgumentException 表达式格式错误
+     */
+    public static KeyExpression parse(String expression) {
+        return parse(expression, 0);
+    }
+
+    /**
+     * @param expression
+     * @param trustedProxies 应用前的可信反向代理数量，为0时不读取X-Forwarded-For
+     * @return
+     * @throws IllegalArgumentException 表达式格式错误
+     */
+    public static KeyExpression parse(String expression, int trustedProxies) {
+        if (trustedProxies < 0) {
+            throw new IllegalArgumentException("无效的可信代理数量 [" + trustedProxies + "].");
+        }
+        String trimmed = expression.trim();
+        if (trimmed.startsWith(HEADER) && trimmed.length() > HEADER.length()) {
+            return new HeaderKey(trimmed.substring(HEADER.length()));
+        }
+        if (trimmed.equals(IP)) {
+            return new IpKey(trustedProxies);
+        }
+        if (trimmed.startsWith(ARG)) {
+            // 保留末尾的空串，"arg:0."与"arg:0..x"均为格式错误
+            String[] parts = trimmed.substring(ARG.length()).split("\\.", -1);
+            for (String part : parts) {
+                if (part.length() == 0) {
+                    throw new IllegalArgumentException("无效的限流key [" + expression + "].");
+                }
+            }
+            PropertyAccessor[] path = new PropertyAccessor[parts.length - 1];
+            for (int i = 1; i < parts.length; i++) {
+                path[i - 1] = new PropertyAccessor(parts[i]);
+            }
+            return new ArgKey(parseIndex(parts[0], expression), path);
+        }
+        throw new IllegalArgumentException("无效的限流key [" + expression + "].");
+    }
+
+    private static int parseIndex(String text, String expression) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) < '0' || text.charAt(i) > '9') {
+                throw new IllegalArgumentException("无效的限流key [" + expression + "].");
+            }
+        }
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无效的限流key [" + expression + "].", e);
+        }
+    }
+
+    /**
+     * 按可信代理数量取客户端IP：每个代理把对端地址追加到X-Forwarded-For末尾，从右数第N个地址由最外层的可信代理写入，
+     * 更左侧的地址可由客户端伪造；地址数量不足N个时取最左侧的地址
+     * @param remoteAddr 连接的对端地址
+     * @param forwardedFor X-Forwarded-For请求头
+     * @param trustedProxies 可信代理数量
+     * @return
+     */
+    static String clientIp(String remoteAddr, String forwardedFor, int trustedProxies) {
+        if (trustedProxies == 0 || forwardedFor == null) {
+            return remoteAddr;
+        }
+        int end = forwardedFor.length();
+        for (int i = 1; ; i++) {
+            int comma = forwardedFor.lastIndexOf(',', end - 1);
+            if (i == trustedProxies || comma < 0) {
+                String ip = forwardedFor.substring(comma + 1, end).trim();
+                return ip.length() == 0 ? remoteAddr : ip;
+            }
+            end = comma;
+        }
+    }
+
+    private static HttpServletRequest currentRequest() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes) {
+            return ((ServletRequestAttributes) attributes).getRequest();
+        }
+        return null;
+    }
+
+    private static class HeaderKey extends KeyExpression {
+        private final String name;
+
+        HeaderKey(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String resolve(Object[] args) {
+            HttpServletRequest request = currentRequest();
+            return request == null ? null : request.getHeader(name);
+        }
+    }
+
+    private static class IpKey extends KeyExpression {
+        private final int trustedProxies;
+
+        IpKey(int trustedProxies) {
+            this.trustedProxies = trustedProxies;
+        }
+
+        @Override
+        public String resolve(Object[] args) {
+            HttpServletRequest request = currentRequest();
+            if (request == null) {
+                return null;
+            }
+            return clientIp(request.getRemoteAddr(),
+                    trustedProxies == 0 ? null : request.getHeader("X-Forwarded-For"), trustedProxies);
+        }
+    }
+
+    private static class ArgKey extends KeyExpression {
+        private final int index;
+        private final PropertyAccessor[] path;
+
+        ArgKey(int index, PropertyAccessor[] path) {
+            this.index = index;
+            this.path = path;
+        }
+
+        @Override
+        public String resolve(Object[] args) {
+            if (args == null || index >= args.length) {
+                return null;
+            }
+            Object value = args[index];
+            for (int i = 0; i < path.length && value != null; i++) {
+                value = path[i].get(value);
+            }
+            return value == null ? null : String.valueOf(value);
+        }
+    }
+
+    /**
+     * 按属性名取值，每个类的getter或字段只查找一次
+     */
+    private static class PropertyAccessor {
+        /**
+         * 类中没有该属性
+         */
+        private static final Object MISSING = new Object();
+        private final String name;
+        private final ConcurrentMap<Class<?>, Object> members = new ConcurrentHashMap<Class<?>, Object>();
+
+        PropertyAccessor(String name) {
+            this.name = name;
+        }
+
+        Object get(Object target) {
+            if (target instanceof Map) {
+                return ((Map<?, ?>) target).get(name);
+            }
+            Class<?> type = target.getClass();
+            Object member = members.get(type);
+            if (member == null) {
+                member = find(type);
+                members.putIfAbsent(type, member);
+            }
+            try {
+                if (member instanceof Method) {
+                    return ((Method) member).invoke(target);
+                }
+                if (member != MISSING) {
+                    return ((Field) member).get(target);
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException("获取限流key失败 [" + type.getName() + "." + name + "].", e);
+            }
+            return null;
+        }
+
+        private Object find(Class<?> type) {
+            String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+            for (String prefix : new String[]{"get", "is"}) {
+                try {
+                    Method method = type.getMethod(prefix + suffix);
+                    if (makeAccessible(method, method.getModifiers(), method.getDeclaringClass())) {
+                        return method;
+                    }
+                } catch (NoSuchMethodException e) {
+                    // 继续查找字段
+                }
+            }
+            for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+                try {
+                    Field field = current.getDeclaredField(name);
+                    if (makeAccessible(field, field.getModifiers(), current)) {
+                        return field;
+                    }
+                } catch (NoSuchFieldException e) {
+                    // 继续查找父类
+                }
+            }
+            return MISSING;
+        }
+
+        /**
+         * JDK 9及以上访问未开放模块中的成员时setAccessible抛出InaccessibleObjectException，此时只使用公开类的公开成员
+         */
+        private static boolean makeAccessible(AccessibleObject member, int modifiers, Class<?> declaringClass) {
+            try {
+                member.setAccessible(true);
+                return true;
+            } catch (RuntimeException e) {
+                return Modifier.isPublic(modifiers) && Modifier.isPublic(declaringClass.getModifiers());
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.guuidea.component.rate.limit.limiter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Ticker;
+
+/**
+ * 无锁令牌桶，状态只有一个AtomicLong：桶重新装满的虚拟时间(纳秒)。
+ * 当前令牌数即(now + 容量对应的时长 - 虚拟时间) / 每个令牌的间隔，时间戳与令牌数合并在一个值中，获取许可只需一次CAS；
+ * 令牌不足时只读取不写入，被限流的请求不会争抢缓存行
+ */
+public class CasTokenBucket implements Limiter {
+    private final long intervalNanos;
+    private final long capacityNanos;
+    private final Ticker ticker;
+    private final AtomicLong fullAt;
+
+    /**
+     * @param permitsPerSecond 每秒产生的令牌数
+     * @param capacity 桶容量，即允许的突发请求数，创建时桶是满的
+     */
+    public CasTokenBucket(double permitsPerSecond, int capacity) {
+        this(permitsPerSecond, capacity, Ticker.systemTicker());
+    }
+
+    /**
+     * @param ticker 时间来源，测试时可替换
+     */
+    CasTokenBucket(double permitsPerSecond, int capacity, Ticker ticker) {
+        if (permitsPerSecond <= 0 || capacity < 1) {
+            throw new IllegalArgumentException("无效的限流配置 [" + permitsPerSecond + "/" + capacity + "].");
+        }
+        this.intervalNanos = Math.max(1L, Math.round(1000000000L / permitsPerSecond));
+        // 低速率配合大突发时乘积可能溢出为负数，此时按上限处理；上限再留出一个间隔，使next - now不会溢出
+        long maxCapacityNanos = Long.MAX_VALUE - intervalNanos;
+        this.capacityNanos = intervalNanos > maxCapacityNanos / capacity ? maxCapacityNanos : intervalNanos * capacity;
+        this.ticker = ticker;
+        this.fullAt = new AtomicLong(ticker.read());
+    }
+
+    @Override
+    public boolean tryAcquire() {
+        long now = ticker.read();
+        while (true) {
+            long current = fullAt.get();
+            // nanoTime可能为负数，只比较差值
+            long next = (current - now < 0 ? now : current) + intervalNanos;
+            if (next - now > capacityNanos) {
+                return false;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+}
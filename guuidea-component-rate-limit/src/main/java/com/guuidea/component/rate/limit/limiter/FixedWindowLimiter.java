@@ -0,0 +1,70 @@
+package com.guuidea.component.rate.limit.limiter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Ticker;
+
+/**
+ * 固定窗口计数，每个窗口最多limit个请求。状态为一个AtomicLong：高32位为窗口序号，低32位为窗口内计数，
+ * 进入新窗口时计数清零；计数已满时只读不写。空闲时长恰为2^32个窗口的整数倍时会被当作同一窗口，只影响这一个窗口
+ */
+public class FixedWindowLimiter implements Limiter {
+    private static final long COUNT_MASK = 0xFFFFFFFFL;
+
+    private final long windowNanos;
+    private final long limit;
+    private final long origin;
+    private final Ticker ticker;
+    private final AtomicLong state = new AtomicLong();
+
+    /**
+     * @param limit 每个窗口的请求数
+     * @param windowMillis 窗口长度(毫秒)
+     */
+    public FixedWindowLimiter(long limit, long windowMillis) {
+        this(limit, windowMillis, Ticker.systemTicker());
+    }
+
+    /**
+     * @param ticker 时间来源，测试时可替换
+     */
+    FixedWindowLimiter(long limit, long windowMillis, Ticker ticker) {
+        if (limit < 1 || limit > COUNT_MASK || windowMillis < 1) {
+            throw new IllegalArgumentException("无效的限流配置 [" + limit + "/" + windowMillis + "ms].");
+        }
+        this.windowNanos = windowMillis * 1000000L;
+        this.limit = limit;
+        this.ticker = ticker;
+        this.origin = ticker.read();
+    }
+
+    @Override
+    public boolean tryAcquire() {
+        long window = currentWindow();
+        while (true) {
+            long current = state.get();
+            long recorded = current >>> 32;
+            // 窗口序号按32位有符号差值比较，回绕不影响判断；取时间后被挂起的线程不会把窗口退回到旧窗口
+            int ahead = (int) (window - recorded);
+            if (ahead < 0 && (int) (currentWindow() - recorded) < 0) {
+                // 重新取时间仍早于已记录的窗口，说明空闲已超过2^31个窗口，已记录的是序号回绕前的窗口
+                ahead = 1;
+            }
+            long next;
+            if (ahead > 0) {
+                next = window << 32 | 1;
+            } else if ((current & COUNT_MASK) >= limit) {
+                return false;
+            } else {
+                next = current + 1;
+            }
+            if (state.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    private long currentWindow() {
+        return ((ticker.read() - origin) / windowNanos) & COUNT_MASK;
+    }
+}
@@ -0,0 +1,19 @@
+package com.guuidea.component.rate.limit.limiter;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+/**
+ * Guava RateLimiter(平滑令牌桶)，获取许可时在内部互斥锁上同步
+ */
+public class GuavaLimiter implements Limiter {
+    private final RateLimiter rateLimiter;
+
+    public GuavaLimiter(double permitsPerSecond) {
+        this.rateLimiter = RateLimiter.create(permitsPerSecond);
+    }
+
+    @Override
+    public boolean tryAcquire() {
+        return rateLimiter.tryAcquire();
+    }
+}
@@ -0,0 +1,49 @@
+package com.guuidea.component.rate.limit.limiter;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * 按key限流，每个key一个限流器。限流器保存在分段的Guava Cache中，超过最大数量时按LRU淘汰，
+ * 超过过期时间未访问的key被移除，内存占用不随key的数量增长；查找与创建只锁定key所在的分段
+ */
+public class KeyedLimiter {
+    private final LimiterFactory factory;
+    private final Cache<String, Limiter> limiters;
+
+    /**
+     * @param factory 为新key创建限流器
+     * @param maxKeys 最多保存的key数量
+     * @param expireSeconds key在该时间内未访问则移除
+     */
+    public KeyedLimiter(LimiterFactory factory, long maxKeys, long expireSeconds) {
+        this.factory = factory;
+        this.limiters = CacheBuilder.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(expireSeconds, TimeUnit.SECONDS)
+                .concurrencyLevel(Math.max(4, Runtime.getRuntime().availableProcessors()))
+                .build();
+    }
+
+    public boolean tryAcquire(String key) {
+        Limiter limiter = limiters.getIfPresent(key);
+        if (limiter == null) {
+            Limiter created = factory.create();
+            limiter = limiters.asMap().putIfAbsent(key, created);
+            if (limiter == null) {
+                limiter = created;
+            }
+        }
+        return limiter.tryAcquire();
+    }
+
+    /**
+     * 当前保存的key数量(近似值)
+     * @return
+     */
+    public long size() {
+        return limiters.size();
+    }
+}
@@ -0,0 +1,13 @@
+package com.guuidea.component.rate.limit.limiter;
+
+/**
+ * 限流器，由@GdRateLimiter的配置创建
+ */
+public interface Limiter {
+
+    /**
+     * 尝试获取一个许可，不等待
+     * @return 获取成功返回true
+     */
+    boolean tryAcquire();
+}
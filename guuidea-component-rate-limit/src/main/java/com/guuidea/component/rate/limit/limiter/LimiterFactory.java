@@ -0,0 +1,9 @@
+package com.guuidea.component.rate.limit.limiter;
+
+/**
+ * 创建限流器，按key限流时为每个key创建一个
+ */
+public interface LimiterFactory {
+
+    Limiter create();
+}
@@ -0,0 +1,82 @@
+package com.guuidea.component.rate.limit.limiter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Ticker;
+
+/**
+ * 滑动窗口计数：以上一窗口的计数按剩余重叠比例加权，加上当前窗口的计数，估算最近一个窗口长度内的请求数，
+ * 避免固定窗口在边界处放行两倍请求。状态为一个AtomicLong：窗口序号24位、上一窗口计数20位、当前窗口计数20位。
+ * 空闲时长恰为2^24个窗口的整数倍(或多一个窗口)时会被当作同一(或相邻)窗口，只影响这一个窗口
+ */
+public class SlidingWindowLimiter implements Limiter {
+    /**
+     * 每个窗口的最大请求数
+     */
+    public static final long MAX_LIMIT = (1L << 20) - 1;
+    private static final long COUNT_MASK = MAX_LIMIT;
+    private static final long WINDOW_MASK = (1L << 24) - 1;
+
+    private final long windowNanos;
+    private final long limit;
+    private final long origin;
+    private final Ticker ticker;
+    private final AtomicLong state = new AtomicLong();
+
+    /**
+     * @param limit 每个窗口的请求数，不超过MAX_LIMIT
+     * @param windowMillis 窗口长度(毫秒)
+     */
+    public SlidingWindowLimiter(long limit, long windowMillis) {
+        this(limit, windowMillis, Ticker.systemTicker());
+    }
+
+    /**
+     * @param ticker 时间来源，测试时可替换
+     */
+    SlidingWindowLimiter(long limit, long windowMillis, Ticker ticker) {
+        if (limit < 1 || limit > MAX_LIMIT || windowMillis < 1) {
+            throw new IllegalArgumentException("无效的限流配置 [" + limit + "/" + windowMillis + "ms].");
+        }
+        this.windowNanos = windowMillis * 1000000L;
+        this.limit = limit;
+        this.ticker = ticker;
+        this.origin = ticker.read();
+    }
+
+    @Override
+    public boolean tryAcquire() {
+        long elapsed = ticker.read() - origin;
+        long window = (elapsed / windowNanos) & WINDOW_MASK;
+        long remaining = windowNanos - elapsed % windowNanos;
+        while (true) {
+            long current = state.get();
+            long currentWindow = current >>> 40;
+            // 窗口序号按24位有符号差值比较，回绕不影响判断；取时间后被挂起的线程计入已记录的窗口
+            long ahead = (window - currentWindow) << 40 >> 40;
+            if (ahead < 0 && (((ticker.read() - origin) / windowNanos - currentWindow) << 40 >> 40) < 0) {
+                // 重新取时间仍早于已记录的窗口，说明空闲已超过2^23个窗口，已记录的是序号回绕前的窗口，计数均已过期
+                ahead = 2;
+            }
+            long previousCount;
+            long count;
+            if (ahead <= 0) {
+                previousCount = (current >>> 20) & COUNT_MASK;
+                count = current & COUNT_MASK;
+            } else if (ahead == 1) {
+                previousCount = current & COUNT_MASK;
+                count = 0;
+            } else {
+                previousCount = 0;
+                count = 0;
+            }
+            if ((double) previousCount * remaining / windowNanos + count >= limit) {
+                return false;
+            }
+            long next = (ahead <= 0 ? currentWindow : window) << 40 | previousCount << 20 | (count + 1);
+            if (state.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+}
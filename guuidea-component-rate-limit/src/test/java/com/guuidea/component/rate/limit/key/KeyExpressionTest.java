@@ -0,0 +1,126 @@
+package com.guuidea.component.rate.limit.key;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * key表达式的解析、参数属性取值与客户端IP
+ */
+public class KeyExpressionTest {
+    private static final String[] INVALID = {
+            "", "ip:", "header:", "arg:", "arg:-1", "arg:+0", "arg:x", "arg:0.", "arg:0..id", "arg:.id",
+            "arg:0.user.", "arg:99999999999", "unknown"
+    };
+
+    @After
+    public void tearDown() {
+        RequestContextHolder.setRequestAttributes(null);
+    }
+
+    @Test
+    public void testInvalidExpressions() {
+        for (String expression : INVALID) {
+            try {
+                KeyExpression.parse(expression);
+                Assert.fail("expression=" + expression);
+            } catch (IllegalArgumentException e) {
+                // 预期
+            }
+        }
+    }
+
+    @Test
+    public void testArgProperties() {
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("id", 7);
+        Object[] args = {new Order(new User("u1", true), 3), map, null};
+        Assert.assertEquals("3", KeyExpression.parse("arg:0.count").resolve(args));
+        Assert.assertEquals("u1", KeyExpression.parse(" arg:0.user.name ").resolve(args));
+        Assert.assertEquals("true", KeyExpression.parse("arg:0.user.active").resolve(args));
+        Assert.assertEquals("7", KeyExpression.parse("arg:1.id").resolve(args));
+        Assert.assertNull(KeyExpression.parse("arg:0.missing").resolve(args));
+        Assert.assertNull(KeyExpression.parse("arg:2.id").resolve(args));
+        Assert.assertNull(KeyExpression.parse("arg:3").resolve(args));
+    }
+
+    @Test
+    public void testIpIgnoresForwardedForByDefault() {
+        bind("10.0.0.1", "1.1.1.1, 2.2.2.2");
+        Assert.assertEquals("10.0.0.1", KeyExpression.parse("ip").resolve(null));
+        Assert.assertEquals("2.2.2.2", KeyExpression.parse("ip", 1).resolve(null));
+        Assert.assertEquals("1.1.1.1", KeyExpression.parse("ip", 2).resolve(null));
+    }
+
+    @Test
+    public void testClientIp() {
+        Assert.assertEquals("10.0.0.1", KeyExpression.clientIp("10.0.0.1", null, 1));
+        Assert.assertEquals("10.0.0.1", KeyExpression.clientIp("10.0.0.1", "6.6.6.6", 0));
+        Assert.assertEquals("10.0.0.1", KeyExpression.clientIp("10.0.0.1", " ", 1));
+        // 客户端伪造的地址在左侧，不会被取到
+        Assert.assertEquals("3.3.3.3", KeyExpression.clientIp("10.0.0.1", "6.6.6.6,3.3.3.3", 1));
+        Assert.assertEquals("3.3.3.3", KeyExpression.clientIp("10.0.0.1", "6.6.6.6, 3.3.3.3 , 4.4.4.4", 2));
+        // 地址不足N个时取最左侧的地址
+        Assert.assertEquals("3.3.3.3", KeyExpression.clientIp("10.0.0.1", "3.3.3.3, 4.4.4.4", 3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeTrustedProxies() {
+        KeyExpression.parse("ip", -1);
+    }
+
+    private static void bind(final String remoteAddr, final String forwardedFor) {
+        HttpServletRequest request = (HttpServletRequest) Proxy.newProxyInstance(KeyExpressionTest.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getRemoteAddr")) {
+                            return remoteAddr;
+                        }
+                        if (method.getName().equals("getHeader") && "X-Forwarded-For".equals(args[0])) {
+                            return forwardedFor;
+                        }
+                        return null;
+                    }
+                });
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    private static class User {
+        private final String name;
+        private final boolean active;
+
+        User(String name, boolean active) {
+            this.name = name;
+            this.active = active;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+    }
+
+    public static class Order {
+        private final User user;
+        private final int count;
+
+        Order(User user, int count) {
+            this.user = user;
+            this.count = count;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.guuidea.component.rate.limit.limiter;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 无锁令牌桶的突发、补充与并发放行数
+ */
+public class CasTokenBucketTest {
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testBurstAndRefill() {
+        // 从接近溢出的时间开始，覆盖nanoTime回绕
+        FakeTicker ticker = new FakeTicker(Long.MAX_VALUE - 500 * MILLIS);
+        CasTokenBucket bucket = new CasTokenBucket(10, 5, ticker);
+        Assert.assertEquals(5, acquire(bucket, 100));
+        ticker.advance(99 * MILLIS);
+        Assert.assertFalse(bucket.tryAcquire());
+        ticker.advance(MILLIS);
+        Assert.assertEquals(1, acquire(bucket, 100));
+        // 空闲再久也只补满桶容量
+        ticker.advance(TimeUnit.SECONDS.toNanos(10));
+        Assert.assertEquals(5, acquire(bucket, 100));
+    }
+
+    @Test
+    public void testRejectDoesNotConsume() {
+        FakeTicker ticker = new FakeTicker(0);
+        CasTokenBucket bucket = new CasTokenBucket(1000, 1, ticker);
+        Assert.assertTrue(bucket.tryAcquire());
+        Assert.assertEquals(0, acquire(bucket, 1000));
+        ticker.advance(MILLIS);
+        Assert.assertTrue(bucket.tryAcquire());
+    }
+
+    @Test
+    public void testConcurrentFrozenTime() throws Exception {
+        CasTokenBucket bucket = new CasTokenBucket(1, 1000, new FakeTicker(0));
+        Assert.assertEquals(1000, concurrentAcquire(bucket, 8, 20000));
+    }
+
+    @Test
+    public void testConcurrentAdvancingTime() throws Exception {
+        // 每次读取时间前进1微秒，每毫秒补充1个令牌
+        FakeTicker ticker = new FakeTicker(0, 1000);
+        CasTokenBucket bucket = new CasTokenBucket(1000, 10, ticker);
+        int admitted = concurrentAcquire(bucket, 8, 20000);
+        long allowed = 10 + ticker.now() / MILLIS;
+        Assert.assertTrue("admitted=" + admitted + ", allowed=" + allowed, admitted <= allowed);
+        Assert.assertTrue("admitted=" + admitted, admitted > 10);
+    }
+
+    @Test
+    public void testLargeCapacityDoesNotOverflow() {
+        // 每个令牌间隔1e12纳秒，乘以1e7的容量超出long范围
+        FakeTicker ticker = new FakeTicker(0);
+        CasTokenBucket bucket = new CasTokenBucket(0.001, 10000000, ticker);
+        // 容量按long范围内的上限处理，取完后不再放行
+        long limit = (Long.MAX_VALUE - 1000000000000L) / 1000000000000L;
+        Assert.assertEquals(limit, acquire(bucket, 10000000));
+        Assert.assertFalse(bucket.tryAcquire());
+        ticker.advance(1000000000000L);
+        Assert.assertTrue(bucket.tryAcquire());
+        Assert.assertFalse(bucket.tryAcquire());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new CasTokenBucket(10, 0);
+    }
+
+    static int acquire(Limiter limiter, int attempts) {
+        int admitted = 0;
+        for (int i = 0; i < attempts; i++) {
+            if (limiter.tryAcquire()) {
+                admitted++;
+            }
+        }
+        return admitted;
+    }
+
+    /**
+     * 多个线程同时开始获取许可，返回放行总数
+     */
+    static int concurrentAcquire(final Limiter limiter, int threads, final int attempts) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger admitted = new AtomicInteger();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    admitted.addAndGet(acquire(limiter, attempts));
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return admitted.get();
+    }
+}
@@ -0,0 +1,35 @@
+package com.guuidea.component.rate.limit.limiter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Ticker;
+
+/**
+ * 手动推进的时间来源，step大于0时每次读取自动前进step纳秒
+ */
+class FakeTicker extends Ticker {
+    private final AtomicLong nanos;
+    private final long step;
+
+    FakeTicker(long start) {
+        this(start, 0);
+    }
+
+    FakeTicker(long start, long step) {
+        this.nanos = new AtomicLong(start);
+        this.step = step;
+    }
+
+    @Override
+    public long read() {
+        return nanos.getAndAdd(step);
+    }
+
+    long now() {
+        return nanos.get();
+    }
+
+    void advance(long nanos) {
+        this.nanos.addAndGet(nanos);
+    }
+}
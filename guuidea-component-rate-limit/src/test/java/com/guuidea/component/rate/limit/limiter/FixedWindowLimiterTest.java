@@ -0,0 +1,61 @@
+package com.guuidea.component.rate.limit.limiter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 固定窗口的窗口切换、窗口序号回绕与并发放行数
+ */
+public class FixedWindowLimiterTest {
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testRollover() {
+        FakeTicker ticker = new FakeTicker(Long.MAX_VALUE - 50 * MILLIS);
+        FixedWindowLimiter limiter = new FixedWindowLimiter(5, 100, ticker);
+        Assert.assertEquals(5, CasTokenBucketTest.acquire(limiter, 100));
+        ticker.advance(99 * MILLIS);
+        Assert.assertFalse(limiter.tryAcquire());
+        ticker.advance(MILLIS);
+        Assert.assertEquals(5, CasTokenBucketTest.acquire(limiter, 100));
+        // 跳过多个窗口后计数同样清零
+        ticker.advance(1000 * MILLIS);
+        Assert.assertEquals(5, CasTokenBucketTest.acquire(limiter, 100));
+    }
+
+    @Test
+    public void testWindowIndexWrap() {
+        FakeTicker ticker = new FakeTicker(0);
+        FixedWindowLimiter limiter = new FixedWindowLimiter(3, 1, ticker);
+        Assert.assertEquals(3, CasTokenBucketTest.acquire(limiter, 10));
+        // 1毫秒的窗口空闲约25天，32位窗口序号的差值变为负数
+        for (long idle : new long[]{(1L << 31) + 5, (1L << 32) - 1, (1L << 32) + 1, (1L << 32) + (1L << 31)}) {
+            ticker.advance(idle * MILLIS);
+            Assert.assertEquals("idle=" + idle, 3, CasTokenBucketTest.acquire(limiter, 10));
+        }
+    }
+
+    @Test
+    public void testConcurrentFrozenTime() throws Exception {
+        FixedWindowLimiter limiter = new FixedWindowLimiter(1000, 1000, new FakeTicker(0));
+        Assert.assertEquals(1000, CasTokenBucketTest.concurrentAcquire(limiter, 8, 20000));
+    }
+
+    @Test
+    public void testConcurrentAdvancingTime() throws Exception {
+        // 每次读取时间前进1微秒，每个1毫秒的窗口最多3个
+        FakeTicker ticker = new FakeTicker(0, 1000);
+        FixedWindowLimiter limiter = new FixedWindowLimiter(3, 1, ticker);
+        int admitted = CasTokenBucketTest.concurrentAcquire(limiter, 8, 20000);
+        long allowed = 3 * (ticker.now() / MILLIS + 1);
+        Assert.assertTrue("admitted=" + admitted + ", allowed=" + allowed, admitted <= allowed);
+        Assert.assertTrue("admitted=" + admitted, admitted > 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLimit() {
+        new FixedWindowLimiter(0, 1000);
+    }
+}
@@ -0,0 +1,64 @@
+package com.guuidea.component.rate.limit.limiter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 滑动窗口的加权估算、窗口序号回绕与并发放行数
+ */
+public class SlidingWindowLimiterTest {
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SECONDS = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testRollover() {
+        FakeTicker ticker = new FakeTicker(Long.MAX_VALUE - 500 * MILLIS);
+        SlidingWindowLimiter limiter = new SlidingWindowLimiter(10, 1000, ticker);
+        Assert.assertEquals(10, CasTokenBucketTest.acquire(limiter, 100));
+        // 新窗口开始时上一窗口仍完全重叠
+        ticker.advance(SECONDS);
+        Assert.assertFalse(limiter.tryAcquire());
+        // 窗口过半，上一窗口按一半计
+        ticker.advance(500 * MILLIS);
+        Assert.assertEquals(5, CasTokenBucketTest.acquire(limiter, 100));
+        // 间隔一个以上窗口后上一窗口不再计入
+        ticker.advance(1500 * MILLIS);
+        Assert.assertEquals(10, CasTokenBucketTest.acquire(limiter, 100));
+    }
+
+    @Test
+    public void testWindowIndexWrap() {
+        FakeTicker ticker = new FakeTicker(0);
+        SlidingWindowLimiter limiter = new SlidingWindowLimiter(10, 1000, ticker);
+        Assert.assertEquals(10, CasTokenBucketTest.acquire(limiter, 100));
+        // 1秒的窗口空闲约97天后，24位窗口序号的差值变为负数
+        for (long idle : new long[]{(1L << 23) + 10, (1L << 24) - 1, (1L << 24) + 2, (1L << 24) + (1L << 23)}) {
+            ticker.advance(idle * SECONDS);
+            Assert.assertEquals("idle=" + idle, 10, CasTokenBucketTest.acquire(limiter, 100));
+        }
+    }
+
+    @Test
+    public void testConcurrentFrozenTime() throws Exception {
+        SlidingWindowLimiter limiter = new SlidingWindowLimiter(1000, 1000, new FakeTicker(0));
+        Assert.assertEquals(1000, CasTokenBucketTest.concurrentAcquire(limiter, 8, 20000));
+    }
+
+    @Test
+    public void testConcurrentAdvancingTime() throws Exception {
+        // 每次读取时间前进1微秒，每个1毫秒的窗口最多3个
+        FakeTicker ticker = new FakeTicker(0, 1000);
+        SlidingWindowLimiter limiter = new SlidingWindowLimiter(3, 1, ticker);
+        int admitted = CasTokenBucketTest.concurrentAcquire(limiter, 8, 20000);
+        long allowed = 3 * (ticker.now() / MILLIS + 1);
+        Assert.assertTrue("admitted=" + admitted + ", allowed=" + allowed, admitted <= allowed);
+        Assert.assertTrue("admitted=" + admitted, admitted > 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLimitTooLarge() {
+        new SlidingWindowLimiter(SlidingWindowLimiter.MAX_LIMIT + 1, 1000);
+    }
+}